@@ -0,0 +1,54 @@
+package bankingsystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Account numbers handed out per second by 8 threads sharing one allocator.
+// Each block reservation is an fsync of accounts.seq, so blockSize sets how often that happens.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+public class AccountNumberBenchmark {
+    @Param({"100", "10000"})
+    int blockSize;
+
+    private Path directory;
+    private AccountNumberAllocator allocator;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("account-number-benchmark");
+        allocator = new AccountNumberAllocator(directory.resolve("accounts.seq"), AccountNumberAllocator.FIRST_NUMBER, blockSize);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        allocator.close();
+        Files.deleteIfExists(directory.resolve("accounts.seq"));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public int next() {
+        return allocator.next();
+    }
+}
@@ -0,0 +1,58 @@
+package bankingsystem;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// PIN checks per second through AuthService as the hashing pool grows.
+// 16 callers keep the pool busy; compare hashingThreads against the machine's core count.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+public class AuthServiceBenchmark {
+    @Param({"1", "2", "4", "8"})
+    int hashingThreads;
+
+    private AuthService noSessions;
+    private AuthService withSessions;
+    private Account account;
+
+    @Setup
+    public void setUp() {
+        account = Fixtures.account(1000, 10_00);
+        noSessions = new AuthService(hashingThreads, 1024, new SessionCache(0, 1)); // Every check hashes
+        withSessions = new AuthService(hashingThreads, 1024, new SessionCache(TimeUnit.HOURS.toMillis(1), 10000));
+        withSessions.verifyPin(account, Fixtures.PIN).join();
+    }
+
+    @TearDown
+    public void tearDown() {
+        noSessions.shutdown();
+        withSessions.shutdown();
+    }
+
+    @Benchmark
+    public boolean verifyPin() {
+        return noSessions.verifyPin(account, Fixtures.PIN).join();
+    }
+
+    @Benchmark
+    public boolean verifyPinWithSession() {
+        return withSessions.verifyPin(account, Fixtures.PIN).join();
+    }
+}
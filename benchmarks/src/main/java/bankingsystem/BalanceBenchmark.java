@@ -0,0 +1,67 @@
+package bankingsystem;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Account.deposit and Account.withdraw in memory (no journal), on a private account and on
+// one account shared by several threads
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BalanceBenchmark {
+    @State(Scope.Thread)
+    public static class OwnAccount {
+        Account account;
+
+        @Setup
+        public void setUp() {
+            Account.setJournal(null);
+            account = Fixtures.account(1000, 1_000_000_000_00L);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SharedAccount {
+        Account account;
+
+        @Setup
+        public void setUp() {
+            Account.setJournal(null);
+            account = Fixtures.account(1000, 1_000_000_000_00L);
+        }
+    }
+
+    @Benchmark
+    public void deposit(OwnAccount state) {
+        state.account.deposit(12_50);
+    }
+
+    @Benchmark
+    public boolean withdraw(OwnAccount state) {
+        return state.account.withdraw(1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void contendedDeposit(SharedAccount state) {
+        state.account.deposit(12_50);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean contendedWithdraw(SharedAccount state) {
+        return state.account.withdraw(1);
+    }
+}
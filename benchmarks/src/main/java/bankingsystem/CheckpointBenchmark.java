@@ -0,0 +1,108 @@
+package bankingsystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Deposit latency over 1M accounts with a checkpoint every second in the background or none; compare p0.99
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 4)
+@Threads(4)
+public class CheckpointBenchmark {
+    private static final long CHECKPOINT_MILLIS = 1000;
+
+    @Param({"false", "true"})
+    boolean checkpointing;
+
+    @Param({"1000000"})
+    int accountCount;
+
+    private Path directory;
+    private Account[] accounts;
+    private TransactionJournal journal;
+    private AccountFile accountFile;
+    private Checkpointer checkpointer;
+    private Thread checkpointThread;
+    private volatile boolean running;
+    private final AtomicLong checkpoints = new AtomicLong();
+
+    @State(Scope.Thread)
+    public static class Teller {
+        private static final AtomicInteger SEEDS = new AtomicInteger();
+        final SplittableRandom random = new SplittableRandom(SEEDS.incrementAndGet());
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("checkpoint-bench");
+        Path accountsFile = directory.resolve("accounts.dat");
+        Path journalFile = directory.resolve("accounts.journal");
+        accounts = Fixtures.store(accountCount).toList().toArray(new Account[0]);
+        AccountFile.create(accountsFile, Arrays.asList(accounts), 0);
+        accountFile = AccountFile.open(accountsFile);
+        journal = new TransactionJournal(journalFile, 0, 1);
+        Account.setJournal(journal);
+        checkpointer = new Checkpointer(journalFile, journal);
+        if (checkpointing) {
+            running = true;
+            checkpointThread = new Thread(() -> {
+                while (running) {
+                    try {
+                        Thread.sleep(CHECKPOINT_MILLIS);
+                        checkpointer.checkpoint(accountFile);
+                        checkpoints.incrementAndGet();
+                    } catch (IOException | InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }, "checkpointer");
+            checkpointThread.start();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        running = false;
+        if (checkpointThread != null) {
+            checkpointThread.join();
+            System.out.println("Checkpoints completed: " + checkpoints.get());
+        }
+        Account.setJournal(null);
+        journal.close();
+        accountFile.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void deposit(Teller teller) {
+        accounts[teller.random.nextInt(accounts.length)].deposit(1_00);
+    }
+}
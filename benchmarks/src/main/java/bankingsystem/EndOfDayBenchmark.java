@@ -0,0 +1,96 @@
+package bankingsystem;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The end-of-day job over 1M accounts with and without the journal, and while tellers keep depositing
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EndOfDayBenchmark {
+    private static final LocalDate DAY = LocalDate.of(2024, 1, 31); // The job runs for any day it is given
+
+    @Param({"1000000"})
+    int accountCount;
+
+    @Param({"true", "false"})
+    boolean journaled;
+
+    private AccountStore accounts;
+    private EndOfDayJob job;
+    private Path directory;
+    private TransactionJournal journal;
+
+    @State(Scope.Thread)
+    public static class Teller {
+        final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        accounts = new AccountStore();
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < accountCount; i++) {
+            String type = i % 2 == 0 ? "Savings" : "Current";
+            accounts.put(new Account(1000 + i, "Juan Dela Cruz", "123 Rizal Street, Manila", "01/01/1990", "Male", type,
+                    random.nextLong(50_000_00), Fixtures.SALT, Fixtures.HASHED_PIN));
+        }
+        if (journaled) {
+            directory = Files.createTempDirectory("end-of-day-bench");
+            journal = new TransactionJournal(directory.resolve("accounts.journal"), 1, 1);
+            Account.setJournal(journal);
+        }
+        job = new EndOfDayJob(new BigDecimal("0.25"), 10000_00, 300_00, journal, 8);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Account.setJournal(null);
+        if (journal != null) {
+            journal.close();
+            Files.deleteIfExists(directory.resolve("accounts.journal"));
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Benchmark
+    public EndOfDayJob.Result run() {
+        return job.run(accounts, DAY);
+    }
+
+    @Benchmark
+    @Group("withTellers")
+    @GroupThreads(1)
+    public EndOfDayJob.Result job() {
+        return job.run(accounts, DAY);
+    }
+
+    @Benchmark
+    @Group("withTellers")
+    @GroupThreads(3)
+    public void deposit(Teller teller) {
+        accounts.get(1000 + teller.random.nextInt(accountCount)).deposit(1_00);
+    }
+}
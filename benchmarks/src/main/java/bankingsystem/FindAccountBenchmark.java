@@ -0,0 +1,66 @@
+package bankingsystem;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// BankingSystem.findAccount latency as the number of accounts grows.
+// findAccount is a direct call to AccountStore.get, which is what is measured here.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FindAccountBenchmark {
+    private static final int LOOKUPS = 1 << 16;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int accountCount;
+
+    private AccountStore accounts;
+    private int[] lookups;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup
+    public void setUp() {
+        accounts = Fixtures.store(accountCount);
+        // Random existing account numbers, so lookups hit all over the table like real tellers would
+        SplittableRandom random = new SplittableRandom(42);
+        lookups = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookups[i] = 1000 + random.nextInt(accountCount);
+        }
+    }
+
+    @Benchmark
+    public Account findAccount(Cursor cursor) {
+        return accounts.get(lookups[cursor.next++ & (LOOKUPS - 1)]);
+    }
+
+    @Benchmark
+    public Account findMissingAccount(Cursor cursor) {
+        return accounts.get(-lookups[cursor.next++ & (LOOKUPS - 1)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Account findAccountConcurrently(Cursor cursor) {
+        return accounts.get(lookups[cursor.next++ & (LOOKUPS - 1)]);
+    }
+}
@@ -0,0 +1,50 @@
+package bankingsystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+// Builds accounts for benchmarks without paying for PBKDF2 on every one: all accounts share
+// one real salt and hash (PIN "123456"), so verifyPin still does the full amount of work.
+final class Fixtures {
+    static final String PIN = "123456";
+    static final String SALT; // Base64, for building accounts by hand
+    static final String HASHED_PIN;
+
+    static {
+        byte[] salt = PinHasher.newSalt();
+        SALT = Base64.getEncoder().encodeToString(salt);
+        HASHED_PIN = Base64.getEncoder().encodeToString(PinHasher.hash(PIN, salt));
+    }
+
+    private Fixtures() {
+    }
+
+    // Balance in cents
+    static Account account(int accountNumber, long balance) {
+        return new Account(accountNumber, "Juan Dela Cruz " + accountNumber, "123 Rizal Street, Manila", "01/01/1990",
+                "Male", "Savings", balance, SALT, HASHED_PIN);
+    }
+
+    // Accounts numbered from 1000 like the real ones
+    static AccountStore store(int accountCount) {
+        AccountStore accounts = new AccountStore();
+        long balance = 5000_00;
+        for (int i = 0; i < accountCount; i++) {
+            accounts.put(account(1000 + i, balance));
+        }
+        return accounts;
+    }
+
+    // Delete a temp directory and everything in it
+    static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package bankingsystem;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// What recording history costs a deposit and withdrawal, and statement queries over 10M entries
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HistoryBenchmark {
+    private static final long YEAR_MILLIS = 365L * 86_400_000L;
+    private static final long START_MILLIS = 1_767_225_600_000L; // 2026-01-01 UTC
+    private static final int BUSY_ACCOUNT = 1000;
+
+    @State(Scope.Thread)
+    public static class Recording {
+        @Param({"true", "false"})
+        boolean history;
+
+        Account account;
+
+        @Setup
+        public void setUp() {
+            Account.setJournal(null);
+            account = Fixtures.account(1000, 1_000_000_000_00L);
+        }
+
+        // A fresh history every iteration; a full one drops its oldest chunk to make room
+        @Setup(Level.Iteration)
+        public void newHistory() {
+            Account.setHistory(history ? new TransactionHistory() : null);
+        }
+
+        @TearDown
+        public void tearDown() {
+            Account.setHistory(null);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Recorded {
+        @Param({"1000000"})
+        int accountCount;
+
+        @Param({"10000000"})
+        int entryCount;
+
+        TransactionHistory history;
+
+        @Setup
+        public void setUp() {
+            long before = usedHeap();
+            history = new TransactionHistory(entryCount); // Room for all of them
+            SplittableRandom random = new SplittableRandom(42);
+            long[] balances = new long[accountCount];
+            for (int i = 0; i < entryCount; i++) {
+                int account = random.nextInt(10) == 0 ? 0 : random.nextInt(accountCount);
+                long amount = 1 + random.nextInt(1_000_00);
+                boolean deposit = balances[account] < amount || random.nextBoolean();
+                balances[account] += deposit ? amount : -amount;
+                history.record(BUSY_ACCOUNT + account, deposit ? TransactionHistory.Type.DEPOSIT : TransactionHistory.Type.WITHDRAWAL,
+                        amount, balances[account], START_MILLIS + (long) i * YEAR_MILLIS / entryCount);
+            }
+            balances = null;
+            long used = usedHeap() - before;
+            System.out.printf("%d entries: %.1f bytes each on the heap, %.1f by bytesUsed%n",
+                    entryCount, (double) used / entryCount, (double) history.bytesUsed() / entryCount);
+        }
+
+        private static long usedHeap() {
+            for (int i = 0; i < 3; i++) {
+                System.gc();
+            }
+            Runtime runtime = Runtime.getRuntime();
+            return runtime.totalMemory() - runtime.freeMemory();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Teller {
+        final SplittableRandom random = new SplittableRandom(42);
+    }
+
+    @Benchmark
+    public void deposit(Recording state) {
+        state.account.deposit(12_50);
+    }
+
+    @Benchmark
+    public boolean withdraw(Recording state) {
+        return state.account.withdraw(1);
+    }
+
+    // First page of everything on a typical account, about 9 entries
+    @Benchmark
+    public TransactionHistory.Page statement(Recorded recorded, Teller teller) {
+        return recorded.history.statement(BUSY_ACCOUNT + 1 + teller.random.nextInt(recorded.accountCount - 1), Long.MIN_VALUE, Long.MAX_VALUE, 0, 20);
+    }
+
+    // First page of a random month on the account with a million entries
+    @Benchmark
+    public TransactionHistory.Page busyAccountMonth(Recorded recorded, Teller teller) {
+        long from = START_MILLIS + teller.random.nextLong(YEAR_MILLIS - 30 * 86_400_000L);
+        return recorded.history.statement(BUSY_ACCOUNT, from, from + 30 * 86_400_000L, 0, 20);
+    }
+}
@@ -0,0 +1,81 @@
+package bankingsystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Durable deposits per second with the journal on, for several group-commit windows.
+// Every deposit waits for its fsync, so throughput depends on how many records share one.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JournalBenchmark {
+    @Param({"0", "1", "5"})
+    long groupCommitMillis;
+
+    private Path directory;
+    private TransactionJournal journal;
+    private Account[] accounts;
+    private final AtomicInteger threadIds = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Teller {
+        int accountIndex = -1;
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal-bench");
+        journal = new TransactionJournal(directory.resolve("accounts.journal"), 1, groupCommitMillis);
+        Account.setJournal(journal);
+        accounts = new Account[64];
+        for (int i = 0; i < accounts.length; i++) {
+            accounts[i] = Fixtures.account(1000 + i, 0);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Account.setJournal(null);
+        journal.close();
+        Files.deleteIfExists(directory.resolve("accounts.journal"));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void durableDeposit(Teller teller) {
+        deposit(teller);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void durableDeposit16Tellers(Teller teller) {
+        deposit(teller);
+    }
+
+    private void deposit(Teller teller) {
+        if (teller.accountIndex < 0) {
+            teller.accountIndex = threadIds.getAndIncrement() % accounts.length;
+        }
+        accounts[teller.accountIndex].deposit(1_00);
+    }
+}
@@ -0,0 +1,104 @@
+package bankingsystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Startup with and without banking.lazyProfiles, to a first balance inquiry and a first account information
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class LazyLoadBenchmark {
+    @Param({"1000000"})
+    int accountCount;
+
+    @Param({"true", "false"})
+    boolean lazy;
+
+    private Path directory;
+    private Path path;
+    private AccountFile file;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("lazy-load-bench");
+        path = directory.resolve("accounts.dat");
+        List<Account> accounts = new ArrayList<>(accountCount);
+        for (int i = 0; i < accountCount; i++) {
+            Account account = Fixtures.account(1000 + i, 5000_00);
+            accounts.add(new Account(1000 + i, "Maria Santos " + i, i + " Rizal Street, Quezon City", "01/01/1990", "Female",
+                    i % 2 == 0 ? "Savings" : "Current", 5000_00, account.getSalt(), account.getHashedPin()));
+        }
+        AccountFile.create(path, accounts, 1);
+        accounts = null;
+
+        long before = usedHeap();
+        AccountFile measured = AccountFile.open(path);
+        Account.setProfiles(new ProfileCache(measured, 10_000));
+        AccountStore store = lazy ? measured.loadAccountsWithoutProfiles() : measured.loadAccounts();
+        long used = usedHeap() - before;
+        System.out.printf("%d accounts: %.0f bytes each on the heap%n", store.size(), (double) used / store.size());
+        measured.close();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(directory);
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+            file = null;
+        }
+    }
+
+    @Benchmark
+    public long firstBalance() throws IOException {
+        return load().get(1000 + accountCount / 2).getBalanceCents();
+    }
+
+    @Benchmark
+    public String firstAccountInfo() throws IOException {
+        Account account = load().get(1000 + accountCount / 2);
+        return account.getFullName() + account.getAddress() + account.getBirthday() + account.getGender();
+    }
+
+    private AccountStore load() throws IOException {
+        file = AccountFile.open(path);
+        if (lazy) {
+            Account.setProfiles(new ProfileCache(file, 10_000));
+            return file.loadAccountsWithoutProfiles();
+        }
+        return file.loadAccounts();
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,123 @@
+package bankingsystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Cost of recording metrics: the same operations with banking.metrics on and off
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MetricsBenchmark {
+    private static final int ACCOUNTS = 100_000;
+    private static final int SESSIONS = 256;
+
+    @Param({"true", "false"})
+    boolean metrics;
+
+    private Account[] accounts;
+    private AuthService authService;
+
+    @State(Scope.Thread)
+    public static class Teller {
+        final SplittableRandom random = new SplittableRandom(42);
+    }
+
+    @Setup
+    public void setUp() {
+        System.setProperty("banking.metrics", String.valueOf(metrics));
+        if (Metrics.ENABLED != metrics) {
+            throw new IllegalStateException("Metrics were initialized before the property was set");
+        }
+        accounts = new Account[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = Fixtures.account(1000 + i, 5000_00);
+            BankingSystem.addAccount(accounts[i]);
+        }
+        authService = new AuthService();
+        for (int i = 0; i < SESSIONS; i++) {
+            authService.verifyPin(accounts[i], Fixtures.PIN).join(); // Open the sessions, tellerDeposit then checks PINs against them
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        authService.shutdown();
+    }
+
+    @Benchmark
+    public void record() {
+        Metrics.record(Metrics.Operation.DEPOSIT, Metrics.Outcome.SUCCESS, Metrics.startTimer(Metrics.Operation.DEPOSIT));
+    }
+
+    @Benchmark
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Benchmark
+    public void deposit(Teller teller) {
+        accounts[teller.random.nextInt(ACCOUNTS)].deposit(1_00);
+    }
+
+    @Benchmark
+    public Account findAccount(Teller teller) {
+        return BankingSystem.findAccount(1000 + teller.random.nextInt(ACCOUNTS));
+    }
+
+    @Benchmark
+    public boolean tellerDeposit(Teller teller) {
+        Account account = BankingSystem.findAccount(1000 + teller.random.nextInt(SESSIONS));
+        if (!authService.verifyPin(account, Fixtures.PIN).join()) {
+            return false;
+        }
+        account.deposit(1_00);
+        return true;
+    }
+
+    // The same with the journal on, as the application runs it: 4 tellers, 1 ms group commit
+    @Benchmark
+    @Threads(4)
+    public boolean durableTellerDeposit(Teller teller, Journaled journaled) {
+        return tellerDeposit(teller);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Journaled {
+        private Path directory;
+        private TransactionJournal journal;
+
+        @Setup
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("metrics-bench");
+            journal = new TransactionJournal(directory.resolve("accounts.journal"), 1, 1);
+            Account.setJournal(journal);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            Account.setJournal(null);
+            journal.close();
+            Files.deleteIfExists(directory.resolve("accounts.journal"));
+            Files.deleteIfExists(directory);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package bankingsystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// What loadOrSaveAccounts costs: loading accounts.dat, saving only changed accounts in place,
+// and writing the whole file from scratch
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class PersistenceBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    int accountCount;
+
+    private Path directory;
+    private Path file;
+    private ArrayList<Account> accounts;
+    private AccountFile accountFile;
+    private long generation = 1;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("persistence-bench");
+        file = directory.resolve("accounts.dat");
+        accounts = Fixtures.store(accountCount).toList();
+        AccountFile.create(file, accounts, generation);
+        accountFile = AccountFile.open(file);
+    }
+
+    // Every save benchmark starts with 1% of the accounts changed, like a day of teller work
+    @Setup(Level.Invocation)
+    public void touchAccounts() {
+        for (int i = 0; i < accounts.size(); i += 100) {
+            accounts.get(i).deposit(1_00);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        accountFile.close();
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(directory.resolve("full.dat"));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public AccountStore load() throws IOException {
+        try (AccountFile opened = AccountFile.open(file)) {
+            return opened.loadAccounts();
+        }
+    }
+
+    @Benchmark
+    public void saveChanged() throws IOException {
+        accountFile.save(accounts, Collections.emptyList(), ++generation, null);
+    }
+
+    @Benchmark
+    public void saveEverything() throws IOException {
+        AccountFile.create(directory.resolve("full.dat"), accounts, ++generation);
+    }
+}
@@ -0,0 +1,46 @@
+package bankingsystem;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Cost of one PIN check: PinHasher.hash (which replaced BankingSystem.hashPin) and Account.verifyPin
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PinHashingBenchmark {
+    private Account account;
+    private byte[] salt;
+
+    @Setup
+    public void setUp() {
+        account = Fixtures.account(1000, 10_00);
+        salt = PinHasher.newSalt();
+    }
+
+    @Benchmark
+    public byte[] hashPin() {
+        return PinHasher.hash(Fixtures.PIN, salt);
+    }
+
+    @Benchmark
+    public boolean verifyPin() {
+        return account.verifyPin(Fixtures.PIN);
+    }
+
+    @Benchmark
+    public boolean verifyWrongPin() {
+        return account.verifyPin("000000");
+    }
+}
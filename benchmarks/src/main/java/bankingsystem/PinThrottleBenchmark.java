@@ -0,0 +1,92 @@
+package bankingsystem;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Correct PIN checks per second for two tellers while six callers guess PINs, with and without the PinThrottle
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class PinThrottleBenchmark {
+    private static final int ACCOUNTS = 10_000;
+
+    @Param({"true", "false"})
+    boolean throttled;
+
+    private final AtomicInteger nextCaller = new AtomicInteger();
+    private AccountStore accounts;
+    private AuthService authService;
+
+    @State(Scope.Thread)
+    public static class Caller {
+        final SplittableRandom random = new SplittableRandom();
+        String name;
+
+        @Setup
+        public void setUp(PinThrottleBenchmark benchmark) {
+            name = "10.0.0." + benchmark.nextCaller.incrementAndGet();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        accounts = Fixtures.store(ACCOUNTS);
+        authService = new AuthService(Runtime.getRuntime().availableProcessors(), 1024, new SessionCache(0, 1),
+                throttled ? new PinThrottle(5, 30_000, 20, 1000, 100_000) : null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        authService.shutdown();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public boolean noAttack(Caller teller) {
+        return verify(teller, Fixtures.PIN);
+    }
+
+    @Benchmark
+    @Group("underAttack")
+    @GroupThreads(2)
+    public boolean teller(Caller teller) {
+        return verify(teller, Fixtures.PIN);
+    }
+
+    @Benchmark
+    @Group("underAttack")
+    @GroupThreads(6)
+    public boolean attacker(Caller attacker) throws InterruptedException {
+        try {
+            return verify(attacker, "000000");
+        } catch (CompletionException e) {
+            Thread.sleep(1); // Refused
+            return false;
+        }
+    }
+
+    private boolean verify(Caller caller, String pin) {
+        Account account = accounts.get(1000 + caller.random.nextInt(ACCOUNTS));
+        return authService.verifyPin(account, pin, caller.name).join();
+    }
+}
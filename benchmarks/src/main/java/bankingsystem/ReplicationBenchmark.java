@@ -0,0 +1,120 @@
+package bankingsystem;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Durable deposits per second without replication, and replicating asynchronously and synchronously
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ReplicationBenchmark {
+    private static final int ACCOUNTS = 10_000;
+
+    @Param({"off", "async", "sync"})
+    String replication;
+
+    private Path primaryDirectory;
+    private Path standbyDirectory;
+    private AccountStore accounts;
+    private TransactionJournal journal;
+    private ReplicationServer server;
+    private Standby standby;
+    private final AtomicInteger threadIds = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Teller {
+        int accountNumber = -1;
+    }
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        primaryDirectory = Files.createTempDirectory("replication-primary");
+        accounts = Fixtures.store(ACCOUNTS);
+        Path accountsFile = primaryDirectory.resolve("accounts.dat");
+        Path journalFile = primaryDirectory.resolve("accounts.journal");
+        AccountFile.create(accountsFile, accounts.toList(), 1);
+        journal = new TransactionJournal(journalFile, 1, 0);
+        Account.setJournal(journal);
+        if (!replication.equals("off")) {
+            server = new ReplicationServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), journal, journalFile,
+                    accountsFile, this, replication.equals("sync"), 1000);
+            server.start();
+            standbyDirectory = Files.createTempDirectory("replication-standby");
+            standby = new Standby(server.getAddress(), standbyDirectory);
+            standby.start();
+            while (standby.getAccounts().size() < ACCOUNTS) {
+                Thread.sleep(10); // accounts.dat arriving
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, InterruptedException {
+        Account.setJournal(null);
+        if (server != null) {
+            long deadline = System.currentTimeMillis() + 10_000;
+            int behind;
+            while ((behind = differences()) > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            System.out.println(server);
+            System.out.println(behind == 0 ? "Standby has every balance" : behind + " balances differ on the standby");
+            standby.close();
+            server.close();
+            Fixtures.deleteDirectory(standbyDirectory);
+        }
+        journal.close();
+        Fixtures.deleteDirectory(primaryDirectory);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void deposit(Teller teller) {
+        account(teller).deposit(1_00);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void deposit16Tellers(Teller teller) {
+        account(teller).deposit(1_00);
+    }
+
+    private Account account(Teller teller) {
+        if (teller.accountNumber < 0) {
+            teller.accountNumber = 1000 + threadIds.getAndIncrement() % ACCOUNTS;
+        }
+        return accounts.get(teller.accountNumber);
+    }
+
+    private int differences() {
+        int count = 0;
+        for (Account account : accounts.toList()) {
+            Account copy = standby.getAccounts().get(account.getAccountNumber());
+            if (copy == null || copy.getBalanceCents() != account.getBalanceCents()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
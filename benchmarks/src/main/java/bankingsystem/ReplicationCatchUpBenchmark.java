@@ -0,0 +1,120 @@
+package bankingsystem;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Time for a standby that was down to catch up on backlog balance changes after it reconnects
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class ReplicationCatchUpBenchmark {
+    private static final int ACCOUNTS = 100_000;
+    private static final int BATCH = 4096;
+
+    @Param({"1000000"})
+    int backlog;
+
+    @Param({"false", "true"})
+    boolean fromScratch;
+
+    private Path primaryDirectory;
+    private Path journalFile;
+    private AccountFile accountFile;
+    private TransactionJournal journal;
+    private Checkpointer checkpointer;
+    private ReplicationServer server;
+    private Path standbyDirectory;
+    private Standby standby;
+    private Standby restarted;
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        primaryDirectory = Files.createTempDirectory("catch-up-primary");
+        Path accountsFile = primaryDirectory.resolve("accounts.dat");
+        journalFile = primaryDirectory.resolve("accounts.journal");
+        AccountFile.create(accountsFile, Fixtures.store(ACCOUNTS).toList(), 1);
+        accountFile = AccountFile.open(accountsFile);
+        journal = new TransactionJournal(journalFile, 1, 0);
+        checkpointer = new Checkpointer(journalFile, journal);
+        server = new ReplicationServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), journal, journalFile,
+                accountsFile, this, false, 1000);
+        server.start();
+        standbyDirectory = Files.createTempDirectory("catch-up-standby");
+        standby = new Standby(server.getAddress(), standbyDirectory);
+        standby.start();
+        awaitCaughtUp(standby);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        standby.close();
+        server.close();
+        journal.close();
+        accountFile.close();
+        Fixtures.deleteDirectory(standbyDirectory);
+        Fixtures.deleteDirectory(primaryDirectory);
+    }
+
+    // Stop the standby, log the backlog on the primary, and reopen the standby's files
+    @Setup(Level.Invocation)
+    public void fallBehind() throws IOException, InterruptedException {
+        synchronized (this) { // The server's file lock
+            checkpointer.checkpoint(accountFile);
+        }
+        awaitCaughtUp(standby); // Into the new journal file, the one the backlog goes to
+        standby.close();
+        int[] accountNumbers = new int[BATCH];
+        long[] amounts = new long[BATCH];
+        for (int logged = 0; logged < backlog; logged += BATCH) {
+            for (int i = 0; i < BATCH; i++) {
+                accountNumbers[i] = 1000 + (logged + i) % ACCOUNTS;
+                amounts[i] = 1_00;
+            }
+            journal.logAdjustments(accountNumbers, amounts, BATCH);
+        }
+        if (fromScratch) {
+            Fixtures.deleteDirectory(standbyDirectory);
+            Files.createDirectory(standbyDirectory);
+        }
+        restarted = new Standby(server.getAddress(), standbyDirectory);
+    }
+
+    @TearDown(Level.Invocation)
+    public void keep() {
+        standby = restarted;
+    }
+
+    @Benchmark
+    public long catchUp() throws IOException, InterruptedException {
+        restarted.start();
+        return awaitCaughtUp(restarted);
+    }
+
+    private long awaitCaughtUp(Standby target) throws IOException, InterruptedException {
+        long end = Files.size(journalFile);
+        while (target.getGeneration() != journal.getGeneration() || target.getOffset() < end) {
+            Thread.sleep(1);
+        }
+        return target.getOffset();
+    }
+}
@@ -0,0 +1,88 @@
+package bankingsystem;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// First page of customer searches over 1M accounts, and the cost of keeping the index up to date
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SearchBenchmark {
+    private static final String[] FIRST_NAMES = {"Juan", "Maria", "Jose", "Ana", "Pedro", "Rosa", "Carlo", "Liza", "Mark", "Angelica",
+        "John", "Kristine", "Paolo", "Camille", "Miguel", "Patricia", "Rafael", "Andrea", "Gabriel", "Nicole", "Antonio", "Isabel",
+        "Ramon", "Teresa", "Francisco", "Carmela", "Luis", "Bea", "Enrique", "Joy", "Manuel", "Grace", "Ricardo", "Cristina",
+        "Eduardo", "Lourdes", "Ernesto", "Victoria", "Fernando", "Aurora"};
+    private static final String[] SURNAMES = {"Dela Cruz", "Santos", "Reyes", "Garcia", "Mendoza", "Bautista", "Ocampo", "Gonzales",
+        "Ramos", "Aquino", "Castillo", "Villanueva", "Torres", "Flores", "Rivera", "Navarro", "Fernandez", "Lopez", "Perez",
+        "Galang", "Peralta", "Mercado", "Tolentino", "Domingo", "Salazar", "Del Rosario", "Pascual", "Santiago", "Aguilar",
+        "Manalo", "Lim", "Tan", "Soriano", "Cruz", "Valdez", "Marquez", "Dizon", "Javier", "Medina", "Padilla"};
+    private static final String[] STREETS = {"Rizal Street", "Mabini Avenue", "Bonifacio Road", "Luna Street", "Aguinaldo Highway",
+        "Quezon Avenue", "Roxas Boulevard", "Taft Avenue", "Espana Boulevard", "Katipunan Avenue", "Ortigas Avenue",
+        "Shaw Boulevard", "Magsaysay Street", "Burgos Street", "Del Pilar Street", "Jacinto Street", "Recto Avenue",
+        "Osmena Highway", "Laurel Street", "Aurora Boulevard", "Marcos Highway", "Sumulong Highway", "Gil Puyat Avenue",
+        "Timog Avenue", "Tomas Morato Avenue", "Banawe Street", "Ayala Avenue", "Buendia Avenue", "Kalaw Street", "Padre Faura Street"};
+    private static final String[] CITIES = {"Manila", "Quezon City", "Makati", "Pasig", "Taguig", "Cebu City", "Davao City",
+        "Caloocan", "Paranaque", "Las Pinas", "Muntinlupa", "Marikina", "Pasay", "Mandaluyong", "San Juan", "Valenzuela",
+        "Malabon", "Navotas", "Antipolo", "Baguio"};
+
+    @Param({"1000000"})
+    int accountCount;
+
+    @Param({"maria", "maria santos", "ma", "12 rizal", "liza galang 7 kalaw baguio", "zzz"})
+    String query;
+
+    private AccountStore accounts;
+    private AccountSearchIndex index;
+    private Account extra;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        accounts = new AccountStore();
+        for (int i = 0; i < accountCount; i++) {
+            accounts.put(customer(1000 + i, random));
+        }
+        long start = System.nanoTime();
+        index = AccountSearchIndex.build(accounts);
+        System.out.printf("Indexed %d accounts, %d distinct words, in %d ms%n", accountCount, index.tokenCount(), (System.nanoTime() - start) / 1_000_000);
+        extra = customer(1000 + accountCount, random);
+    }
+
+    private static Account customer(int accountNumber, SplittableRandom random) {
+        String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + SURNAMES[random.nextInt(SURNAMES.length)];
+        String address = (1 + random.nextInt(2000)) + " " + STREETS[random.nextInt(STREETS.length)] + ", " + CITIES[random.nextInt(CITIES.length)];
+        return new Account(accountNumber, name, address, "01/01/1990", "Female", "Savings", 0, Fixtures.SALT, Fixtures.HASHED_PIN);
+    }
+
+    @Benchmark
+    public AccountSearchIndex.Page firstPage() {
+        return index.search(query, 0, 20);
+    }
+
+    // A page far into the results costs about the same as the first
+    @Benchmark
+    public AccountSearchIndex.Page laterPage() {
+        return index.search(query, 1000 + accountCount / 2, 20);
+    }
+
+    // Opening and closing an account, as addAccount and removeAccount do
+    @Benchmark
+    public void addAndRemove() {
+        index.add(extra);
+        index.remove(extra);
+    }
+}
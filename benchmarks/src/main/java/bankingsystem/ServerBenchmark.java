@@ -0,0 +1,115 @@
+package bankingsystem;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Loopback load test of BankServer: 16 terminals, each sending one request and waiting for the answer
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+public class ServerBenchmark {
+    private static final int ACCOUNTS = 1000;
+
+    @State(Scope.Benchmark)
+    public static class Server {
+        final AtomicInteger nextAccount = new AtomicInteger(1000);
+        AuthService authService;
+        BankServer server;
+        Thread serverThread;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            Account.setJournal(null);
+            for (int i = 0; i < ACCOUNTS; i++) {
+                BankingSystem.addAccount(Fixtures.account(1000 + i, 1_000_000_00L));
+            }
+            authService = new AuthService();
+            server = new BankServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), authService, 16);
+            serverThread = new Thread(() -> {
+                try {
+                    server.run();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }, "bank-server");
+            serverThread.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            server.stop();
+            authService.shutdown();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Terminal {
+        Socket socket;
+        BufferedReader in;
+        OutputStream out;
+        byte[] balanceRequest;
+        byte[] depositRequest;
+
+        @Setup(Level.Trial)
+        public void connect(Server server) throws IOException {
+            int accountNumber = server.nextAccount.getAndIncrement();
+            socket = new Socket();
+            socket.setTcpNoDelay(true);
+            socket.connect(server.server.getAddress());
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = socket.getOutputStream();
+            balanceRequest = ("BALANCE|" + accountNumber + "|" + Fixtures.PIN + "\n").getBytes(StandardCharsets.UTF_8);
+            depositRequest = ("DEPOSIT|" + accountNumber + "|" + Fixtures.PIN + "|1.00\n").getBytes(StandardCharsets.UTF_8);
+            request(balanceRequest); // Opens the session
+        }
+
+        String request(byte[] request) throws IOException {
+            out.write(request);
+            out.flush();
+            String response = in.readLine();
+            if (response == null || !response.startsWith("OK")) {
+                throw new IOException("Request failed: " + response);
+            }
+            return response;
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    @Benchmark
+    public String balance(Terminal terminal) throws IOException {
+        return terminal.request(terminal.balanceRequest);
+    }
+
+    @Benchmark
+    public String deposit(Terminal terminal) throws IOException {
+        return terminal.request(terminal.depositRequest);
+    }
+}
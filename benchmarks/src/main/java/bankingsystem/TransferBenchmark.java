@@ -0,0 +1,82 @@
+package bankingsystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Transfers per second with 8 threads between random accounts in memory; teardown checks no money was lost
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+public class TransferBenchmark {
+    private static final long OPENING_BALANCE = 1_000_000_00L;
+    private static final int BATCH = 10;
+
+    @Param({"16", "100000"})
+    int accountCount;
+
+    private Account[] accounts;
+
+    @State(Scope.Thread)
+    public static class Teller {
+        final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Setup
+    public void setUp() {
+        Account.setJournal(null);
+        accounts = new Account[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accounts[i] = Fixtures.account(1000 + i, OPENING_BALANCE);
+        }
+    }
+
+    @TearDown
+    public void checkTotal() {
+        long total = 0;
+        for (Account account : accounts) {
+            total += account.getBalanceCents();
+        }
+        if (total != OPENING_BALANCE * accountCount) {
+            throw new IllegalStateException("Money was created or lost: " + total);
+        }
+    }
+
+    @Benchmark
+    public boolean transfer(Teller teller) {
+        int from = teller.random.nextInt(accountCount);
+        int to = (from + 1 + teller.random.nextInt(accountCount - 1)) % accountCount;
+        return Account.transfer(accounts[from], accounts[to], 1 + teller.random.nextInt(100_00));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public boolean batch(Teller teller) {
+        List<Transfer> transfers = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            int from = teller.random.nextInt(accountCount);
+            int to = (from + 1 + teller.random.nextInt(accountCount - 1)) % accountCount;
+            transfers.add(new Transfer(accounts[from], accounts[to], 1 + teller.random.nextInt(100_00)));
+        }
+        return Account.transferAll(transfers);
+    }
+}
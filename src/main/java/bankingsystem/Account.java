@@ -0,0 +1,610 @@
+package bankingsystem;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class Account implements Serializable {
+    private static final long serialVersionUID = 98645089309268598L; // Matches accounts.dat files written before this field existed
+    private static AccountNumberAllocator accountNumbers = new AccountNumberAllocator(AccountNumberAllocator.FIRST_NUMBER);
+    private static TransactionJournal journal; // Where mutations are logged, null when journaling is off
+    private static TransactionHistory history; // Where statements come from, null when it is off
+    private static ProfileCache profiles; // Where accounts loaded without their profile find it
+    // Genders and account types, an account keeps a one-byte code into this; only ever added to
+    private static volatile String[] codes = {null, "Male", "Female", "Savings", "Current"};
+    private int accountNumber;
+    private String fullName;
+    private String address;
+    private String birthday;
+    private byte gender; // See codes
+    private byte accountType;
+    private volatile long balance; // In cents (see Money), only changed through BALANCE
+    private byte[] credentials; // PBKDF2 salt then PIN hash, raw bytes (see PinHasher)
+    private transient volatile boolean modified; // Changed since accounts.dat was last saved
+    private transient boolean profileInFile; // fullName, address, birthday and gender come from profiles
+
+    // Balance updates are compare-and-set loops on this handle, so none is lost
+    private static final VarHandle BALANCE;
+    private static final long CLOSED = Long.MIN_VALUE; // Balance of a closed account; below any amount, so nothing comes out
+
+    static {
+        try {
+            BALANCE = MethodHandles.lookup().findVarHandle(Account.class, "balance", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Fields of the old ObjectOutputStream accounts.dat, kept so such files can still be converted
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("accountNumber", int.class),
+        new ObjectStreamField("fullName", String.class),
+        new ObjectStreamField("address", String.class),
+        new ObjectStreamField("birthday", String.class),
+        new ObjectStreamField("gender", String.class),
+        new ObjectStreamField("accountType", String.class),
+        new ObjectStreamField("balance", BigDecimal.class),
+        new ObjectStreamField("hashedPin", String.class),
+        new ObjectStreamField("salt", String.class)
+    };
+
+    // Constructor, the balance is in cents
+    public Account(String fullName, String address, String birthday, String gender, String accountType, long balance, String pin) {
+        this.accountNumber = accountNumbers.next();
+        this.fullName = fullName;
+        this.address = address;
+        this.birthday = birthday;
+        this.gender = code(gender);
+        this.accountType = code(accountType);
+        this.balance = balance;
+        byte[] salt = PinHasher.newSalt(); // Generate salt for PBKDF2
+        this.credentials = credentials(salt, PinHasher.hash(pin, salt)); // Hash the PIN using PBKDF2 with the generated salt
+        this.modified = true; // Not in accounts.dat yet
+    }
+
+    // Constructor taking the salt and PIN hash as Base64, as older versions kept them
+    Account(int accountNumber, String fullName, String address, String birthday, String gender, String accountType, long balance, String salt, String hashedPin) {
+        this(accountNumber, fullName, address, birthday, gender, accountType, balance,
+                credentials(Base64.getDecoder().decode(salt), Base64.getDecoder().decode(hashedPin)));
+    }
+
+    // Constructor used by accounts.dat and the journal; credentials is the salt then the PIN hash, kept as is
+    Account(int accountNumber, String fullName, String address, String birthday, String gender, String accountType, long balance, byte[] credentials) {
+        this.accountNumber = accountNumber;
+        this.fullName = fullName;
+        this.address = address;
+        this.birthday = birthday;
+        this.gender = code(gender);
+        this.accountType = code(accountType);
+        this.balance = balance;
+        this.credentials = credentials;
+    }
+
+    // Constructor used when loading accounts.dat without the profile fields, see ProfileCache
+    Account(int accountNumber, String accountType, long balance, byte[] credentials) {
+        this.accountNumber = accountNumber;
+        this.accountType = code(accountType);
+        this.balance = balance;
+        this.credentials = credentials;
+        this.profileInFile = true;
+    }
+
+    // The salt and PIN hash in one array, the way an account keeps them
+    static byte[] credentials(byte[] salt, byte[] hash) {
+        if (salt.length != PinHasher.SALT_LENGTH || hash.length != PinHasher.HASH_LENGTH) {
+            throw new IllegalArgumentException("Salt and PIN hash must be " + PinHasher.SALT_LENGTH + " and "
+                    + PinHasher.HASH_LENGTH + " bytes, not " + salt.length + " and " + hash.length);
+        }
+        byte[] credentials = Arrays.copyOf(salt, PinHasher.SALT_LENGTH + PinHasher.HASH_LENGTH);
+        System.arraycopy(hash, 0, credentials, PinHasher.SALT_LENGTH, PinHasher.HASH_LENGTH);
+        return credentials;
+    }
+
+    private static byte code(String value) {
+        String[] known = codes;
+        for (int i = 0; i < known.length; i++) {
+            if (Objects.equals(known[i], value)) {
+                return (byte) i;
+            }
+        }
+        return addCode(value);
+    }
+
+    private static synchronized byte addCode(String value) {
+        String[] known = codes;
+        for (int i = 0; i < known.length; i++) {
+            if (Objects.equals(known[i], value)) {
+                return (byte) i; // Added meanwhile
+            }
+        }
+        if (known.length > 255) {
+            throw new IllegalArgumentException("Too many different genders and account types, can't add " + value);
+        }
+        String[] added = Arrays.copyOf(known, known.length + 1);
+        added[known.length] = value;
+        codes = added;
+        return (byte) known.length;
+    }
+
+    private static String value(byte code) {
+        return codes[code & 0xFF];
+    }
+
+    // Set where accounts loaded without their profile read it from
+    static void setProfiles(ProfileCache profileCache) {
+        profiles = profileCache;
+    }
+
+    // Set where new account numbers come from
+    static void setAccountNumbers(AccountNumberAllocator allocator) {
+        accountNumbers = allocator;
+    }
+
+    // Set the journal that deposits and withdrawals are written to
+    static void setJournal(TransactionJournal transactionJournal) {
+        journal = transactionJournal;
+    }
+
+    // Set the history that every change of balance is recorded in
+    static void setHistory(TransactionHistory transactionHistory) {
+        history = transactionHistory;
+    }
+
+    // Getter methods
+    public int getAccountNumber() {
+        return accountNumber;
+    }
+
+    public String getFullName() {
+        return profileInFile ? profiles.get(accountNumber).fullName : fullName;
+    }
+
+    public String getAddress() {
+        return profileInFile ? profiles.get(accountNumber).address : address;
+    }
+
+    public String getBirthday() {
+        return profileInFile ? profiles.get(accountNumber).birthday : birthday;
+    }
+
+    public String getGender() {
+        return profileInFile ? profiles.get(accountNumber).gender : value(gender);
+    }
+
+    public String getAccountType() {
+        return value(accountType);
+    }
+
+    public BigDecimal getBalance() {
+        return Money.toBigDecimal(getBalanceCents());
+    }
+
+    // Balance in cents, 0 once the account is closed
+    public long getBalanceCents() {
+        long current = balance;
+        return current == CLOSED ? 0 : current;
+    }
+
+    public boolean isClosed() {
+        return balance == CLOSED;
+    }
+
+    // Base64, as older versions kept it
+    public String getHashedPin() {
+        return Base64.getEncoder().encodeToString(Arrays.copyOfRange(credentials, PinHasher.SALT_LENGTH, credentials.length));
+    }
+
+    public String getSalt() {
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(credentials, PinHasher.SALT_LENGTH));
+    }
+
+    // The salt followed by the PIN hash; the account's own array, not to be changed
+    byte[] credentials() {
+        return credentials;
+    }
+
+    public boolean isModified() {
+        return modified;
+    }
+
+    void markModified() {
+        modified = true;
+    }
+
+    void clearModified() {
+        modified = false;
+    }
+
+    // Method to verify if an entered PIN matches the stored hash
+    public boolean verifyPin(String enteredPin) {
+        return PinHasher.verify(enteredPin, credentials); // Hash the entered PIN with the stored salt and compare
+    }
+
+    // Amounts are in cents. Throws ArithmeticException if the balance can't hold it, IllegalStateException if closed.
+    public void deposit(long amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        long start = Metrics.startTimer(Metrics.Operation.DEPOSIT);
+        ReentrantLock lock = AccountLocks.of(accountNumber); // Credits and closing wait, so the room checked here stays
+        lock.lock();
+        try {
+            if (!canCredit(amount)) {
+                Metrics.record(Metrics.Operation.DEPOSIT, Metrics.Outcome.ERROR, start);
+                throw isClosed() ? closed() : new ArithmeticException("Balance can't hold a deposit of " + Money.format(amount));
+            }
+            if (journal != null) {
+                try {
+                    journal.logDeposit(accountNumber, amount);
+                } catch (RuntimeException e) {
+                    Metrics.record(Metrics.Operation.DEPOSIT, Metrics.Outcome.ERROR, start);
+                    throw e;
+                }
+            }
+            if (!credit(TransactionHistory.Type.DEPOSIT, amount)) {
+                Metrics.record(Metrics.Operation.DEPOSIT, Metrics.Outcome.ERROR, start);
+                throw new IllegalStateException("Deposit to account " + accountNumber + " is journaled but couldn't be credited");
+            }
+        } finally {
+            lock.unlock();
+        }
+        Metrics.record(Metrics.Operation.DEPOSIT, Metrics.Outcome.SUCCESS, start);
+    }
+
+    public boolean withdraw(long amount) {
+        return tryWithdraw(amount);
+    }
+
+    // Withdraw only if the balance covers the amount, checked and updated in one step; false if it doesn't
+    public boolean tryWithdraw(long amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        long start = Metrics.startTimer(Metrics.Operation.WITHDRAW);
+        TransactionHistory transactions = history;
+        if (transactions == null ? !debit(amount) : !debit(transactions, amount)) {
+            Metrics.record(Metrics.Operation.WITHDRAW, Metrics.Outcome.INSUFFICIENT_FUNDS, start);
+            return false;
+        }
+        if (journal != null) {
+            try {
+                journal.logWithdraw(accountNumber, amount);
+            } catch (RuntimeException e) {
+                credit(TransactionHistory.Type.REVERSAL, amount); // Not durable, give the money back
+                Metrics.record(Metrics.Operation.WITHDRAW, Metrics.Outcome.ERROR, start);
+                throw e;
+            }
+        }
+        Metrics.record(Metrics.Operation.WITHDRAW, Metrics.Outcome.SUCCESS, start);
+        return true;
+    }
+
+    // Move money between two accounts, both balances change or neither; false if from lacks the funds
+    public static boolean transfer(Account from, Account to, long amount) {
+        Transfer transfer = new Transfer(from, to, amount); // Checks the arguments
+        long start = Metrics.startTimer(Metrics.Operation.TRANSFER);
+        int[] stripes = AccountLocks.lock(from.accountNumber, to.accountNumber);
+        try {
+            if (!from.debit(amount)) {
+                Metrics.record(Metrics.Operation.TRANSFER, Metrics.Outcome.INSUFFICIENT_FUNDS, start);
+                return false;
+            }
+            if (!to.canCredit(amount)) {
+                from.applyDeposit(amount);
+                Metrics.record(Metrics.Operation.TRANSFER, Metrics.Outcome.ERROR, start);
+                throw to.isClosed() ? to.closed()
+                        : new ArithmeticException("Balance of account " + to.accountNumber + " can't hold a transfer of " + Money.format(amount));
+            }
+            if (journal != null) {
+                try {
+                    journal.logTransfers(List.of(transfer));
+                } catch (RuntimeException e) {
+                    from.applyDeposit(amount); // Not durable, give the money back
+                    Metrics.record(Metrics.Operation.TRANSFER, Metrics.Outcome.ERROR, start);
+                    throw e;
+                }
+            }
+            to.applyDeposit(amount); // Like a deposit, only once it is journaled
+            TransactionHistory transactions = history;
+            if (transactions != null) {
+                // Both stripes are held, so nothing else has changed these balances since
+                transactions.record(from.accountNumber, TransactionHistory.Type.TRANSFER_OUT, amount, from.balance);
+                transactions.record(to.accountNumber, TransactionHistory.Type.TRANSFER_IN, amount, to.balance);
+            }
+            Metrics.record(Metrics.Operation.TRANSFER, Metrics.Outcome.SUCCESS, start);
+            return true;
+        } finally {
+            AccountLocks.unlock(stripes);
+        }
+    }
+
+    // Apply several transfers in order as one unit; false, changing nothing, if any step would overdraw
+    public static boolean transferAll(List<Transfer> transfers) {
+        int[] accountNumbers = new int[transfers.size() * 2];
+        for (int i = 0; i < transfers.size(); i++) {
+            accountNumbers[2 * i] = transfers.get(i).getFrom().accountNumber;
+            accountNumbers[2 * i + 1] = transfers.get(i).getTo().accountNumber;
+        }
+        long start = Metrics.startTimer(Metrics.Operation.TRANSFER);
+        int[] stripes = AccountLocks.lock(accountNumbers);
+        try {
+            // Work out what each account gains or loses overall, checking every step in order
+            Map<Account, long[]> net = new IdentityHashMap<>();
+            for (Transfer transfer : transfers) {
+                long[] fromNet = net.computeIfAbsent(transfer.getFrom(), account -> new long[1]);
+                if (transfer.getFrom().balance + fromNet[0] < transfer.getAmount()) {
+                    Metrics.record(Metrics.Operation.TRANSFER, Metrics.Outcome.INSUFFICIENT_FUNDS, start);
+                    return false;
+                }
+                fromNet[0] -= transfer.getAmount();
+                net.computeIfAbsent(transfer.getTo(), account -> new long[1])[0] += transfer.getAmount();
+            }
+
+            // A plain withdrawal can still take the funds, so debit first and undo if one fails
+            List<Account> debited = new ArrayList<>();
+            for (Map.Entry<Account, long[]> entry : net.entrySet()) {
+                long change = entry.getValue()[0];
+                if (change < 0) {
+                    if (!entry.getKey().debit(-change)) {
+                        refund(debited, net);
+                        Metrics.record(Metrics.Operation.TRANSFER, Metrics.Outcome.INSUFFICIENT_FUNDS, start);
+                        return false;
+                    }
+                    debited.add(entry.getKey());
+                }
+            }
+            for (Map.Entry<Account, long[]> entry : net.entrySet()) {
+                long change = entry.getValue()[0];
+                if (change > 0 && !entry.getKey().canCredit(change)) {
+                    refund(debited, net);
+                    Metrics.record(Metrics.Operation.TRANSFER, Metrics.Outcome.ERROR, start);
+                    throw entry.getKey().isClosed() ? entry.getKey().closed()
+                            : new ArithmeticException("Balance of account " + entry.getKey().accountNumber + " can't hold " + Money.format(change));
+                }
+            }
+            if (journal != null) {
+                try {
+                    journal.logTransfers(transfers);
+                } catch (RuntimeException e) {
+                    refund(debited, net);
+                    Metrics.record(Metrics.Operation.TRANSFER, Metrics.Outcome.ERROR, start);
+                    throw e;
+                }
+            }
+            for (Map.Entry<Account, long[]> entry : net.entrySet()) {
+                if (entry.getValue()[0] > 0) {
+                    entry.getKey().applyDeposit(entry.getValue()[0]); // Only once journaled, as in transfer
+                }
+            }
+            if (history != null) {
+                recordAll(history, transfers, net);
+            }
+            Metrics.record(Metrics.Operation.TRANSFER, Metrics.Outcome.SUCCESS, start);
+            return true;
+        } finally {
+            AccountLocks.unlock(stripes);
+        }
+    }
+
+    // Record each step of a transferAll with the balance it left, the stripes are still held
+    private static void recordAll(TransactionHistory transactions, List<Transfer> transfers, Map<Account, long[]> net) {
+        Map<Account, long[]> running = new IdentityHashMap<>();
+        for (Map.Entry<Account, long[]> entry : net.entrySet()) {
+            running.put(entry.getKey(), new long[] {entry.getKey().balance - entry.getValue()[0]});
+        }
+        for (Transfer transfer : transfers) {
+            long[] fromBalance = running.get(transfer.getFrom());
+            long[] toBalance = running.get(transfer.getTo());
+            fromBalance[0] -= transfer.getAmount();
+            toBalance[0] += transfer.getAmount();
+            transactions.record(transfer.getFrom().accountNumber, TransactionHistory.Type.TRANSFER_OUT, transfer.getAmount(), fromBalance[0]);
+            transactions.record(transfer.getTo().accountNumber, TransactionHistory.Type.TRANSFER_IN, transfer.getAmount(), toBalance[0]);
+        }
+    }
+
+    // Close the account once its close is journaled and return the balance to pay out
+    long close() {
+        ReentrantLock lock = AccountLocks.of(accountNumber); // Not half way through a transfer
+        lock.lock();
+        try {
+            long current;
+            do {
+                current = balance;
+                if (current == CLOSED) {
+                    return 0; // Closed by someone else already
+                }
+            } while (!BALANCE.compareAndSet(this, current, CLOSED));
+            modified = true;
+            return current;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private IllegalStateException closed() {
+        return new IllegalStateException("Account " + accountNumber + " is closed");
+    }
+
+    // Undo the net change of each account in the list
+    private static void refund(List<Account> changed, Map<Account, long[]> net) {
+        for (Account account : changed) {
+            account.applyDeposit(-net.get(account)[0]);
+        }
+    }
+
+    // Take money out if the balance covers it, without logging
+    private boolean debit(long amount) {
+        long current;
+        do {
+            current = balance;
+            if (current < amount) {
+                return false;
+            }
+        } while (!BALANCE.compareAndSet(this, current, current - amount));
+        modified = true;
+        return true;
+    }
+
+    // Take a fee of up to amount without going below zero, returns what was taken; not journaled
+    long takeFee(long amount) {
+        TransactionHistory transactions = history;
+        if (transactions == null) {
+            return takeUpTo(amount);
+        }
+        ReentrantLock lock = AccountLocks.of(accountNumber);
+        lock.lock();
+        try {
+            long taken = takeUpTo(amount);
+            if (taken > 0) {
+                transactions.record(accountNumber, TransactionHistory.Type.FEE, taken, balance);
+            }
+            return taken;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Give back a fee that couldn't be journaled
+    void refundFee(long amount) {
+        credit(TransactionHistory.Type.REVERSAL, amount);
+    }
+
+    // Pay interest that is already journaled, false if the balance can't hold it (replay skips it too)
+    boolean addInterest(long amount) {
+        return credit(TransactionHistory.Type.INTEREST, amount);
+    }
+
+    private long takeUpTo(long amount) {
+        long current;
+        long taken;
+        do {
+            current = balance;
+            taken = Math.min(amount, Math.max(current, 0));
+            if (taken == 0) {
+                return 0;
+            }
+        } while (!BALANCE.compareAndSet(this, current, current - taken));
+        modified = true;
+        return taken;
+    }
+
+    // Debit and record it under the account's stripe, so history stays in balance order
+    private boolean debit(TransactionHistory transactions, long amount) {
+        ReentrantLock lock = AccountLocks.of(accountNumber);
+        lock.lock();
+        try {
+            if (!debit(amount)) {
+                return false;
+            }
+            transactions.record(accountNumber, TransactionHistory.Type.WITHDRAWAL, amount, balance);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // tryCredit and record it under the account's stripe, where every credit outside replay happens
+    private boolean credit(TransactionHistory.Type type, long amount) {
+        ReentrantLock lock = AccountLocks.of(accountNumber);
+        lock.lock();
+        try {
+            if (!tryCredit(amount)) {
+                return false;
+            }
+            TransactionHistory transactions = history;
+            if (transactions != null) {
+                transactions.record(accountNumber, type, amount, balance);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // True if the balance has room for the amount and the account is open
+    private boolean canCredit(long amount) {
+        long current = balance;
+        return current != CLOSED && !(amount > 0 && current > Long.MAX_VALUE - amount);
+    }
+
+    // Add money without logging; false if it would overflow or the account is closed
+    boolean tryCredit(long amount) {
+        long current;
+        do {
+            current = balance;
+            if (current == CLOSED || amount > 0 && current > Long.MAX_VALUE - amount) {
+                return false;
+            }
+        } while (!BALANCE.compareAndSet(this, current, current + amount));
+        modified = true;
+        return true;
+    }
+
+    // Apply a deposit without logging it and return the new balance; a closed account is left alone
+    long applyDeposit(long amount) {
+        long current;
+        long updated;
+        do {
+            current = balance;
+            if (current == CLOSED) {
+                return 0;
+            }
+            updated = Money.add(current, amount);
+        } while (!BALANCE.compareAndSet(this, current, updated));
+        modified = true;
+        return updated;
+    }
+
+    // Apply a logged withdrawal; the funds check already passed when it was logged
+    void applyWithdraw(long amount) {
+        long current;
+        do {
+            current = balance;
+            if (current == CLOSED) {
+                return;
+            }
+        } while (!BALANCE.compareAndSet(this, current, Money.subtract(current, amount)));
+        modified = true;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("accountNumber", accountNumber);
+        fields.put("fullName", getFullName());
+        fields.put("address", getAddress());
+        fields.put("birthday", getBirthday());
+        fields.put("gender", getGender());
+        fields.put("accountType", getAccountType());
+        fields.put("balance", getBalance());
+        fields.put("hashedPin", getHashedPin());
+        fields.put("salt", getSalt());
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        accountNumber = fields.get("accountNumber", 0);
+        fullName = (String) fields.get("fullName", null);
+        address = (String) fields.get("address", null);
+        birthday = (String) fields.get("birthday", null);
+        gender = code((String) fields.get("gender", null));
+        accountType = code((String) fields.get("accountType", null));
+        BigDecimal savedBalance = (BigDecimal) fields.get("balance", null);
+        balance = savedBalance != null ? Money.fromBigDecimal(savedBalance) : 0;
+        credentials = credentials(Base64.getDecoder().decode((String) fields.get("salt", null)),
+                Base64.getDecoder().decode((String) fields.get("hashedPin", null)));
+    }
+}
@@ -0,0 +1,618 @@
+package bankingsystem;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+// Binary accounts.dat: a 64 byte header, fixed 128 byte slots and a string heap, mapped in 1 GiB regions
+// Slots carry the generation they were written in, so a save that dies half-way is finished by replay
+public class AccountFile implements Closeable {
+    private static final int MAGIC = 0x42414354; // "BACT"
+    private static final int VERSION = 1;
+    private static final int SERIALIZED_MAGIC = 0xACED; // Java serialization stream, the old format
+
+    // Header fields
+    private static final int HEADER_SIZE = 64;
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_GENERATION = 8;
+    private static final int H_SLOT_CAPACITY = 16;
+    private static final int H_SLOT_COUNT = 20;
+    private static final int H_HEAP_USED = 24;
+    private static final int H_END_OF_DAY = 28; // Epoch day, 0 if end of day never ran
+
+    // Slot fields, slots are a power of two so a slot never straddles a page
+    private static final int SLOT_SIZE = 128;
+    private static final int S_NUMBER = 0;
+    private static final int S_STATUS = 4;
+    private static final int S_GENERATION = 8;
+    private static final int S_BALANCE = 16; // Unscaled balance, cents when the scale is 2
+    private static final int S_SCALE = 24;
+    private static final int S_SALT = 28;
+    private static final int S_HASH = 44;
+    private static final int S_STRINGS = 76; // Heap offsets of the five string fields
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 32;
+    private static final int STRING_FIELDS = 5;
+
+    private static final byte LIVE = 1;
+    private static final byte CLOSED = 2;
+
+    private final Path path;
+    private FileChannel channel;
+    private Mapping map;
+    private int slotCapacity;
+    private int slotCount;
+    private long heapStart;
+    private int heapUsed;
+    private SlotIndex index;
+
+    private AccountFile(Path path) {
+        this.path = path;
+    }
+
+    // Map an existing file and index its slots by account number
+    public static AccountFile open(Path path) throws IOException {
+        AccountFile file = new AccountFile(path);
+        file.map();
+        return file;
+    }
+
+    // Write a complete file for the given accounts, replacing any file at that path
+    public static void create(Path path, Collection<Account> accounts, long generation) throws IOException {
+        create(path, accounts, generation, null);
+    }
+
+    // lastEndOfDay is the day of the last end-of-day run in the balances, or null
+    public static void create(Path path, Collection<Account> accounts, long generation, LocalDate lastEndOfDay) throws IOException {
+        long heapNeeded = 0;
+        for (Account account : accounts) {
+            for (String value : stringFields(account)) {
+                heapNeeded += 4 + value.getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        if (heapNeeded > Integer.MAX_VALUE) {
+            throw new IOException("Account strings take " + heapNeeded + " bytes, more than an account file can hold");
+        }
+        // Leave room to grow so new accounts can be added in place
+        int slotCapacity = (int) Math.min(Integer.MAX_VALUE, Math.max(1024, accounts.size() * 2L));
+        int heapCapacity = (int) Math.min(Integer.MAX_VALUE, Math.max(64 * 1024, heapNeeded * 2));
+        long size = HEADER_SIZE + (long) slotCapacity * SLOT_SIZE + heapCapacity;
+
+        Path tempFile = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Mapping buffer = new Mapping(out, size);
+            long heapStart = HEADER_SIZE + (long) slotCapacity * SLOT_SIZE;
+            int slot = 0;
+            int heapUsed = 0;
+            for (Account account : accounts) {
+                long slotPos = slotPosition(slot);
+                heapUsed = writeStrings(buffer, slotPos, heapStart, heapUsed, account);
+                writeSlot(buffer, slotPos, account, generation);
+                slot++;
+            }
+            buffer.putInt(H_MAGIC, MAGIC);
+            buffer.putInt(H_VERSION, VERSION);
+            buffer.putLong(H_GENERATION, generation);
+            buffer.putInt(H_SLOT_CAPACITY, slotCapacity);
+            buffer.putInt(H_SLOT_COUNT, slot);
+            buffer.putInt(H_HEAP_USED, heapUsed);
+            buffer.putLong(H_END_OF_DAY, lastEndOfDay != null ? lastEndOfDay.toEpochDay() : 0);
+            buffer.force();
+        }
+        Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Start a new, empty file
+    public static void createEmpty(Path path) throws IOException {
+        create(path, Collections.emptyList(), 0);
+    }
+
+    // True if the file was written by the old ObjectOutputStream based save
+    public static boolean isSerializedFormat(Path path) throws IOException {
+        if (!Files.exists(path) || Files.size(path) < 2) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(path.toFile()))) {
+            return in.readUnsignedShort() == SERIALIZED_MAGIC;
+        }
+    }
+
+    // Convert an old serialized accounts.dat to this format, keeping the original as .ser
+    @SuppressWarnings("unchecked")
+    public static void convert(Path path) throws IOException {
+        ArrayList<Account> accounts;
+        long generation;
+        try (ObjectInputStream ois = new LegacyObjectInputStream(new FileInputStream(path.toFile()))) {
+            accounts = (ArrayList<Account>) ois.readObject();
+            try {
+                generation = ois.readLong();
+            } catch (EOFException e) {
+                generation = 0; // Saved before the journal existed
+            }
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unreadable account file: " + e.getMessage(), e);
+        }
+        Files.copy(path, path.resolveSibling(path.getFileName() + ".ser"), StandardCopyOption.REPLACE_EXISTING);
+        create(path, accounts, generation);
+    }
+
+    // Old files were written when Account had no package, map that name to the current class
+    private static final class LegacyObjectInputStream extends ObjectInputStream {
+        LegacyObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (desc.getName().equals("Account")) {
+                return Account.class;
+            }
+            return super.resolveClass(desc);
+        }
+    }
+
+    // Converter entry point: java bankingsystem.AccountFile [accounts.dat]
+    public static void main(String[] args) throws IOException {
+        Path path = Paths.get(args.length > 0 ? args[0] : "accounts.dat");
+        if (!isSerializedFormat(path)) {
+            System.out.println(path + " is not in the old serialized format, nothing to convert.");
+            return;
+        }
+        convert(path);
+        System.out.println("Converted " + path + " (original saved as " + path.getFileName() + ".ser)");
+    }
+
+    public synchronized long getGeneration() {
+        return map.getLong(H_GENERATION);
+    }
+
+    // The day of the last end-of-day run in the saved balances, or null
+    public synchronized LocalDate getLastEndOfDay() {
+        long epochDay = map.getLong(H_END_OF_DAY);
+        return epochDay != 0 ? LocalDate.ofEpochDay(epochDay) : null;
+    }
+
+    // Generation in the header of the file at path, without opening it as an AccountFile
+    static long readGeneration(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (channel.read(header, 0) < HEADER_SIZE || header.getInt(H_MAGIC) != MAGIC) {
+                throw new IOException("Not an account file: " + path);
+            }
+            return header.getLong(H_GENERATION);
+        }
+    }
+
+    // Journal generation the account's slot was last saved in, or -1 if the file has no such account
+    public synchronized long generationOf(int accountNumber) {
+        int slot = index.get(accountNumber);
+        return slot < 0 ? -1 : map.getLong(slotPosition(slot) + S_GENERATION);
+    }
+
+    // Build an Account for every live slot
+    public synchronized AccountStore loadAccounts() {
+        AccountStore accounts = emptyStore();
+        for (int slot = 0; slot < slotCount; slot++) {
+            long slotPos = slotPosition(slot);
+            if (map.get(slotPos + S_STATUS) == LIVE) {
+                accounts.put(readAccount(slotPos));
+            }
+        }
+        return accounts;
+    }
+
+    // Accounts with only the number, type, balance and credentials; the rest comes through readProfile
+    public synchronized AccountStore loadAccountsWithoutProfiles() {
+        AccountStore accounts = emptyStore();
+        ArrayList<String> accountTypes = new ArrayList<>(); // Only a handful, so every account shares one String for each
+        for (int slot = 0; slot < slotCount; slot++) {
+            long slotPos = slotPosition(slot);
+            if (map.get(slotPos + S_STATUS) == LIVE) {
+                accounts.put(new Account(map.getInt(slotPos + S_NUMBER), readSharedString(slotPos, 4, accountTypes), readBalance(slotPos),
+                        readCredentials(slotPos)));
+            }
+        }
+        return accounts;
+    }
+
+    // The name, address, birthday and gender saved for the account, or null if the file has no such account
+    synchronized ProfileCache.Profile readProfile(int accountNumber) {
+        int slot = index.get(accountNumber);
+        if (slot < 0) {
+            return null;
+        }
+        long slotPos = slotPosition(slot);
+        return new ProfileCache.Profile(readString(slotPos, 0), readString(slotPos, 1), readString(slotPos, 2), readString(slotPos, 3));
+    }
+
+    // Build an Account for each of the given account numbers that has a live slot
+    public synchronized AccountStore loadAccounts(int[] accountNumbers) {
+        AccountStore accounts = emptyStore();
+        for (int accountNumber : accountNumbers) {
+            int slot = index.get(accountNumber);
+            if (slot >= 0 && map.get(slotPosition(slot) + S_STATUS) == LIVE) {
+                accounts.put(readAccount(slotPosition(slot)));
+            }
+        }
+        return accounts;
+    }
+
+    // Write changed and closed accounts in place; a null lastEndOfDay keeps the file's day
+    public synchronized void save(Collection<Account> accounts, Collection<Integer> closedAccountNumbers, long newGeneration,
+                                  LocalDate lastEndOfDay) throws IOException {
+        LocalDate saved = getLastEndOfDay();
+        LocalDate endOfDay = saved == null || lastEndOfDay != null && lastEndOfDay.isAfter(saved) ? lastEndOfDay : saved;
+        ArrayList<Account> written = new ArrayList<>();
+        try {
+            for (int accountNumber : closedAccountNumbers) {
+                int slot = index.get(accountNumber);
+                if (slot >= 0) {
+                    long slotPos = slotPosition(slot);
+                    map.put(slotPos + S_STATUS, CLOSED);
+                    map.putLong(slotPos + S_GENERATION, newGeneration);
+                }
+            }
+            for (Account account : accounts) {
+                if (!account.isModified()) {
+                    continue;
+                }
+                account.clearModified(); // Clear before reading so a concurrent change marks it again
+                written.add(account);
+                int slot = index.get(account.getAccountNumber());
+                if (slot >= 0) {
+                    writeBalance(slotPosition(slot), account, newGeneration);
+                } else if (!append(account, newGeneration)) {
+                    rewrite(accounts, newGeneration, endOfDay); // Out of room, compact into a bigger file
+                    return;
+                }
+            }
+            map.putInt(H_SLOT_COUNT, slotCount);
+            map.putInt(H_HEAP_USED, heapUsed);
+            map.putLong(H_END_OF_DAY, endOfDay != null ? endOfDay.toEpochDay() : 0);
+            map.force(); // Slots and the day must be on disk before the header says the save is complete
+            map.putLong(H_GENERATION, newGeneration);
+            map.force();
+        } catch (IOException | RuntimeException e) {
+            for (Account account : written) {
+                account.markModified(); // Not saved after all
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (map != null) {
+            map.force();
+        }
+        channel.close();
+    }
+
+    private void map() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            throw new IOException("Invalid account file size: " + size);
+        }
+        map = new Mapping(channel, size);
+        if (map.getInt(H_MAGIC) != MAGIC) {
+            throw new IOException("Not an account file: " + path);
+        }
+        if (map.getInt(H_VERSION) != VERSION) {
+            throw new IOException("Unsupported account file version " + map.getInt(H_VERSION));
+        }
+        slotCapacity = map.getInt(H_SLOT_CAPACITY);
+        slotCount = map.getInt(H_SLOT_COUNT);
+        heapUsed = map.getInt(H_HEAP_USED);
+        heapStart = HEADER_SIZE + (long) slotCapacity * SLOT_SIZE;
+
+        index = new SlotIndex(slotCount);
+        for (int slot = 0; slot < slotCount; slot++) {
+            long slotPos = slotPosition(slot);
+            if (map.get(slotPos + S_STATUS) != 0) {
+                index.put(map.getInt(slotPos + S_NUMBER), slot);
+            }
+        }
+    }
+
+    // Compact all live accounts into a new, larger file and switch to it
+    private void rewrite(Collection<Account> accounts, long newGeneration, LocalDate lastEndOfDay) throws IOException {
+        AccountStore merged = loadAccounts();
+        ArrayList<Account> cleared = new ArrayList<>();
+        for (Account account : accounts) {
+            if (account.isModified()) {
+                account.clearModified(); // Before reading, as in save()
+                cleared.add(account);
+            }
+            merged.put(account);
+        }
+        map.force();
+        try {
+            create(path, merged.toList(), newGeneration, lastEndOfDay); // Still mapped, accounts without their profile read it from here
+        } catch (IOException | RuntimeException e) {
+            for (Account account : cleared) {
+                account.markModified(); // Not saved after all; save() marks the ones it cleared itself
+            }
+            throw e;
+        }
+        channel.close();
+        map = null;
+        map();
+    }
+
+    // A store for loading into, already at the file's end-of-day
+    private AccountStore emptyStore() {
+        AccountStore accounts = new AccountStore();
+        LocalDate day = getLastEndOfDay();
+        if (day != null) {
+            accounts.endOfDayDone(day);
+        }
+        return accounts;
+    }
+
+    // Add a slot for a new account, false if there is no room left
+    private boolean append(Account account, long generation) {
+        long heapNeeded = 0;
+        for (String value : stringFields(account)) {
+            heapNeeded += 4 + value.getBytes(StandardCharsets.UTF_8).length;
+        }
+        if (slotCount >= slotCapacity || heapStart + heapUsed + heapNeeded > map.size()) {
+            return false;
+        }
+        int slot = slotCount++;
+        long slotPos = slotPosition(slot);
+        heapUsed = writeStrings(map, slotPos, heapStart, heapUsed, account);
+        writeSlot(map, slotPos, account, generation);
+        index.put(account.getAccountNumber(), slot);
+        return true;
+    }
+
+    private static long slotPosition(int slot) {
+        return HEADER_SIZE + (long) slot * SLOT_SIZE;
+    }
+
+    private static String[] stringFields(Account account) {
+        return new String[]{account.getFullName(), account.getAddress(), account.getBirthday(), account.getGender(), account.getAccountType()};
+    }
+
+    private static void writeSlot(Mapping buffer, long slotPos, Account account, long generation) {
+        buffer.putInt(slotPos + S_NUMBER, account.getAccountNumber());
+        buffer.put(slotPos + S_SALT, account.credentials()); // Salt then hash, so it fills S_HASH too
+        writeBalance(buffer, slotPos, account, generation);
+        buffer.put(slotPos + S_STATUS, LIVE); // Last, so a slot is never live with missing fields
+    }
+
+    private static void writeBalance(Mapping buffer, long slotPos, Account account, long generation) {
+        buffer.putLong(slotPos + S_BALANCE, account.getBalanceCents());
+        buffer.putInt(slotPos + S_SCALE, Money.SCALE);
+        buffer.putLong(slotPos + S_GENERATION, generation);
+    }
+
+    private void writeBalance(long slotPos, Account account, long generation) {
+        writeBalance(map, slotPos, account, generation);
+    }
+
+    // Append the account's strings to the heap and point the slot at them, returns the new heap size
+    private static int writeStrings(Mapping buffer, long slotPos, long heapStart, int heapUsed, Account account) {
+        String[] values = stringFields(account);
+        for (int i = 0; i < STRING_FIELDS; i++) {
+            byte[] bytes = values[i].getBytes(StandardCharsets.UTF_8);
+            long position = heapStart + heapUsed;
+            buffer.putInt(position, bytes.length);
+            buffer.put(position + 4, bytes);
+            buffer.putInt(slotPos + S_STRINGS + i * 4, heapUsed);
+            heapUsed += 4 + bytes.length;
+        }
+        return heapUsed;
+    }
+
+    private String readString(long slotPos, int field) {
+        long position = heapStart + map.getInt(slotPos + S_STRINGS + field * 4);
+        byte[] bytes = new byte[map.getInt(position)];
+        map.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // The string field if it equals one of known, compared in place; otherwise read and add it
+    private String readSharedString(long slotPos, int field, ArrayList<String> known) {
+        long position = heapStart + map.getInt(slotPos + S_STRINGS + field * 4);
+        int length = map.getInt(position);
+        for (String value : known) {
+            if (value.length() == length && matches(position + 4, value)) {
+                return value;
+            }
+        }
+        String value = readString(slotPos, field);
+        known.add(value);
+        return value;
+    }
+
+    // True if the bytes at position are the characters of value, for ASCII values
+    private boolean matches(long position, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80 || map.get(position + i) != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Account readAccount(long slotPos) {
+        return new Account(map.getInt(slotPos + S_NUMBER), readString(slotPos, 0), readString(slotPos, 1),
+                readString(slotPos, 2), readString(slotPos, 3), readString(slotPos, 4), readBalance(slotPos),
+                readCredentials(slotPos));
+    }
+
+    // The salt and hash are next to each other in the slot, in the order Account keeps them
+    private byte[] readCredentials(long slotPos) {
+        byte[] credentials = new byte[SALT_LENGTH + HASH_LENGTH];
+        map.get(slotPos + S_SALT, credentials);
+        return credentials;
+    }
+
+    private long readBalance(long slotPos) {
+        long unscaled = map.getLong(slotPos + S_BALANCE);
+        int scale = map.getInt(slotPos + S_SCALE);
+        // Files saved before balances were cents can have any scale
+        return scale == Money.SCALE ? unscaled : Money.fromBigDecimal(BigDecimal.valueOf(unscaled, scale));
+    }
+
+    // A file mapped as 1 GiB regions that overlap by a page, as one MappedByteBuffer stops at 2 GiB
+    private static final class Mapping {
+        private static final int REGION_BITS = 30;
+        private static final int REGION_SIZE = 1 << REGION_BITS;
+        private static final int OVERLAP = 4096; // More than a slot
+
+        private final MappedByteBuffer[] regions;
+        private final long size;
+
+        Mapping(FileChannel channel, long size) throws IOException {
+            this.size = size;
+            regions = new MappedByteBuffer[(int) ((size + REGION_SIZE - 1) >>> REGION_BITS)];
+            for (int i = 0; i < regions.length; i++) {
+                long start = (long) i << REGION_BITS;
+                regions[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(size - start, REGION_SIZE + OVERLAP));
+            }
+        }
+
+        long size() {
+            return size;
+        }
+
+        byte get(long position) {
+            return region(position).get(offset(position));
+        }
+
+        void put(long position, byte value) {
+            region(position).put(offset(position), value);
+        }
+
+        int getInt(long position) {
+            return region(position).getInt(offset(position));
+        }
+
+        void putInt(long position, int value) {
+            region(position).putInt(offset(position), value);
+        }
+
+        long getLong(long position) {
+            return region(position).getLong(offset(position));
+        }
+
+        void putLong(long position, long value) {
+            region(position).putLong(offset(position), value);
+        }
+
+        void get(long position, byte[] bytes) {
+            for (int done = 0; done < bytes.length; ) {
+                long at = position + done;
+                int length = Math.min(bytes.length - done, REGION_SIZE - offset(at));
+                region(at).get(offset(at), bytes, done, length);
+                done += length;
+            }
+        }
+
+        void put(long position, byte[] bytes) {
+            for (int done = 0; done < bytes.length; ) {
+                long at = position + done;
+                int length = Math.min(bytes.length - done, REGION_SIZE - offset(at));
+                region(at).put(offset(at), bytes, done, length);
+                done += length;
+            }
+        }
+
+        void force() {
+            for (MappedByteBuffer region : regions) {
+                region.force();
+            }
+        }
+
+        private MappedByteBuffer region(long position) {
+            return regions[(int) (position >>> REGION_BITS)];
+        }
+
+        private static int offset(long position) {
+            return (int) position & (REGION_SIZE - 1);
+        }
+    }
+
+    // Account number to slot number, open addressing over primitive ints
+    private static final class SlotIndex {
+        private int[] keys;
+        private int[] slots; // -1 marks a free entry
+        private int size;
+
+        SlotIndex(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected * 2) - 1) << 1;
+            keys = new int[capacity];
+            slots = new int[capacity];
+            Arrays.fill(slots, -1);
+        }
+
+        int get(int key) {
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (slots[i] >= 0) {
+                if (keys[i] == key) {
+                    return slots[i];
+                }
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        void put(int key, int slot) {
+            if ((size + 1) * 2 > keys.length) {
+                int[] oldKeys = keys;
+                int[] oldSlots = slots;
+                keys = new int[oldKeys.length * 2];
+                slots = new int[oldKeys.length * 2];
+                Arrays.fill(slots, -1);
+                size = 0;
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldSlots[i] >= 0) {
+                        put(oldKeys[i], oldSlots[i]);
+                    }
+                }
+            }
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (slots[i] >= 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (slots[i] < 0) {
+                size++;
+            }
+            keys[i] = key;
+            slots[i] = slot;
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
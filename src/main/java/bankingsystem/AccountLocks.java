@@ -0,0 +1,55 @@
+package bankingsystem;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Striped locks for transfers, always taken in ascending order so transfers can't deadlock
+final class AccountLocks {
+    private static final int STRIPES = 1024; // Must be a power of two
+    private static final ReentrantLock[] LOCKS = new ReentrantLock[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            LOCKS[i] = new ReentrantLock();
+        }
+    }
+
+    private AccountLocks() {
+    }
+
+    // Lock the stripes of the given accounts, returns them for unlock()
+    static int[] lock(int... accountNumbers) {
+        int[] stripes = new int[accountNumbers.length];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = stripe(accountNumbers[i]);
+        }
+        Arrays.sort(stripes);
+        int count = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            if (count == 0 || stripes[count - 1] != stripes[i]) {
+                stripes[count++] = stripes[i]; // Each stripe once, it's enough to hold it once
+            }
+        }
+        stripes = Arrays.copyOf(stripes, count);
+        for (int stripe : stripes) {
+            LOCKS[stripe].lock();
+        }
+        return stripes;
+    }
+
+    // The lock of one account's stripe, for callers that only need one account
+    static ReentrantLock of(int accountNumber) {
+        return LOCKS[stripe(accountNumber)];
+    }
+
+    static void unlock(int[] stripes) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            LOCKS[stripes[i]].unlock();
+        }
+    }
+
+    private static int stripe(int accountNumber) {
+        int h = accountNumber * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+}
@@ -0,0 +1,126 @@
+package bankingsystem;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hands out account numbers that are never reused, reserved in blocks from accounts.seq under a file lock
+public class AccountNumberAllocator implements Closeable {
+    public static final int FIRST_NUMBER = 1000;
+    private static final int MAGIC = 0x414E554D; // "ANUM"
+    private static final int FILE_SIZE = 8; // Magic, then the next unreserved number
+    // File locks belong to the whole JVM, so allocators in one process take turns on this first
+    private static final Object FILE_LOCK = new Object();
+
+    private final FileChannel channel; // null when numbers don't need to survive a restart
+    private final int blockSize;
+    private final int floor;
+    private volatile Block block = new Block(0, 0); // Empty, the first next() reserves one
+    private int nextInMemory; // Next unreserved number when there is no file, guarded by this
+
+    private static final class Block {
+        final int start;
+        final int end; // Exclusive
+        final AtomicInteger next;
+
+        Block(int start, int end) {
+            this.start = start;
+            this.end = end;
+            this.next = new AtomicInteger(start);
+        }
+    }
+
+    // Reserve from the given sequence file, never handing out a number below floor
+    public AccountNumberAllocator(Path file, int floor, int blockSize) throws IOException {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.blockSize = blockSize;
+        this.floor = Math.max(floor, FIRST_NUMBER);
+    }
+
+    // Numbers that only need to be unique within this process, e.g. for benchmarks
+    public AccountNumberAllocator(int floor) {
+        this.channel = null;
+        this.blockSize = 1024;
+        this.floor = Math.max(floor, FIRST_NUMBER);
+        this.nextInMemory = this.floor;
+    }
+
+    public int next() {
+        while (true) {
+            Block current = block;
+            int number = current.next.getAndIncrement();
+            if (number >= current.start && number < current.end) { // The start check catches wrap-around
+                return number;
+            }
+            reserveBlock(current);
+        }
+    }
+
+    // Swap in a new block unless another thread already did
+    private synchronized void reserveBlock(Block exhausted) {
+        if (block != exhausted) {
+            return;
+        }
+        int start;
+        try {
+            start = channel != null ? reserveFromFile() : reserveInMemory();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not reserve account numbers", e);
+        }
+        block = new Block(start, start + blockSize);
+    }
+
+    private int reserveInMemory() {
+        int start = nextInMemory;
+        nextInMemory = checkedEnd(start);
+        return start;
+    }
+
+    private int reserveFromFile() throws IOException {
+        synchronized (FILE_LOCK) {
+            FileLock lock = channel.lock();
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(FILE_SIZE);
+                int start = floor;
+                if (channel.size() >= FILE_SIZE) {
+                    channel.read(buffer, 0);
+                    buffer.flip();
+                    if (buffer.getInt() != MAGIC) {
+                        throw new IOException("Not an account number sequence file");
+                    }
+                    start = Math.max(start, buffer.getInt());
+                }
+                buffer.clear();
+                buffer.putInt(MAGIC).putInt(checkedEnd(start)).flip();
+                channel.write(buffer, 0);
+                channel.force(false); // The block is ours only once this is on disk
+                return start;
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    private int checkedEnd(int start) {
+        if (start > Integer.MAX_VALUE - blockSize) {
+            throw new IllegalStateException("Account numbers exhausted");
+        }
+        return start + blockSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
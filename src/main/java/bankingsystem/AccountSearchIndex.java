@@ -0,0 +1,325 @@
+package bankingsystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.StampedLock;
+
+// Finds accounts by word prefixes of the customer's name or address, with an inverted index and a leapfrog join
+public class AccountSearchIndex {
+    private static final int MAX_LISTS_TO_JOIN = 16;
+
+    private final AccountStore accounts;
+    private final StampedLock lock = new StampedLock();
+    private final TreeMap<String, Postings> tokens = new TreeMap<>(); // Guarded by lock
+
+    // Sorted account numbers for one token
+    private static final class Postings {
+        int[] numbers = new int[2];
+        int size;
+
+        void add(int accountNumber) {
+            if (size > 0 && numbers[size - 1] >= accountNumber) { // New accounts usually have the highest number
+                int at = Arrays.binarySearch(numbers, 0, size, accountNumber);
+                if (at >= 0) {
+                    return;
+                }
+                insertAt(-at - 1, accountNumber);
+                return;
+            }
+            insertAt(size, accountNumber);
+        }
+
+        private void insertAt(int at, int accountNumber) {
+            if (size == numbers.length) {
+                numbers = Arrays.copyOf(numbers, size * 2);
+            }
+            System.arraycopy(numbers, at, numbers, at + 1, size - at);
+            numbers[at] = accountNumber;
+            size++;
+        }
+
+        void remove(int accountNumber) {
+            int at = Arrays.binarySearch(numbers, 0, size, accountNumber);
+            if (at >= 0) {
+                System.arraycopy(numbers, at + 1, numbers, at, size - at - 1);
+                size--;
+            }
+        }
+
+        // Position of the first account number at or above target from position from, galloping first
+        int firstAtLeast(int target, int from) {
+            if (from >= size || numbers[from] >= target) {
+                return from;
+            }
+            int step = 1;
+            while (from + step < size && numbers[from + step] < target) {
+                step <<= 1;
+            }
+            int at = Arrays.binarySearch(numbers, from + step / 2 + 1, Math.min(from + step + 1, size), target);
+            return at >= 0 ? at : -at - 1;
+        }
+    }
+
+    // One page of search results
+    public static final class Page {
+        private final List<Account> accounts;
+        private final boolean hasMore;
+
+        Page(List<Account> accounts, boolean hasMore) {
+            this.accounts = accounts;
+            this.hasMore = hasMore;
+        }
+
+        public List<Account> getAccounts() {
+            return accounts;
+        }
+
+        public boolean hasMore() {
+            return hasMore;
+        }
+
+        // Pass to search() to get the next page
+        public int getLastAccountNumber() {
+            return accounts.isEmpty() ? Integer.MAX_VALUE : accounts.get(accounts.size() - 1).getAccountNumber();
+        }
+    }
+
+    public AccountSearchIndex(AccountStore accounts) {
+        this.accounts = accounts;
+    }
+
+    // Index every account in the store
+    public static AccountSearchIndex build(AccountStore accounts) {
+        List<Account> all = accounts.toList();
+        all.sort((a, b) -> Integer.compare(a.getAccountNumber(), b.getAccountNumber())); // Postings then only ever append
+        HashMap<String, Postings> byToken = new HashMap<>(); // Cheaper than the sorted map for millions of adds
+        for (Account account : all) {
+            for (String word : tokens(account)) {
+                byToken.computeIfAbsent(word, w -> new Postings()).add(account.getAccountNumber());
+            }
+        }
+        AccountSearchIndex index = new AccountSearchIndex(accounts);
+        index.tokens.putAll(byToken);
+        return index;
+    }
+
+    public void add(Account account) {
+        List<String> words = tokens(account);
+        long stamp = lock.writeLock();
+        try {
+            for (String word : words) {
+                tokens.computeIfAbsent(word, w -> new Postings()).add(account.getAccountNumber());
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void remove(Account account) {
+        List<String> words = tokens(account);
+        long stamp = lock.writeLock();
+        try {
+            for (String word : words) {
+                Postings postings = tokens.get(word);
+                if (postings != null) {
+                    postings.remove(account.getAccountNumber());
+                    if (postings.size == 0) {
+                        tokens.remove(word);
+                    }
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Up to limit accounts matching every word of the query with numbers above afterAccountNumber
+    public Page search(String query, int afterAccountNumber, int limit) {
+        List<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty() || limit <= 0 || afterAccountNumber == Integer.MAX_VALUE) {
+            return new Page(Collections.emptyList(), false); // Nothing can come after the largest account number
+        }
+        long stamp = lock.readLock();
+        try {
+            // Short prefixes that start hundreds of words are checked against the finalists' text instead
+            List<Merge> joined = new ArrayList<>();
+            List<String> checked = new ArrayList<>();
+            Merge smallestChecked = null;
+            String smallestToken = null;
+            for (String token : queryTokens) {
+                Merge merge = new Merge(withPrefix(token).values().toArray(new Postings[0]));
+                if (merge.lists.length == 0) {
+                    return new Page(Collections.emptyList(), false);
+                }
+                if (merge.lists.length <= MAX_LISTS_TO_JOIN) {
+                    joined.add(merge);
+                } else {
+                    checked.add(token);
+                    if (smallestChecked == null || merge.size < smallestChecked.size) {
+                        smallestChecked = merge;
+                        smallestToken = token;
+                    }
+                }
+            }
+            if (joined.isEmpty()) {
+                joined.add(smallestChecked); // Nothing narrower to walk
+                checked.remove(smallestToken);
+            }
+            joined.sort((a, b) -> Long.compare(a.size, b.size));
+
+            List<Account> results = new ArrayList<>(Math.min(limit, 64));
+            int candidate = joined.get(0).advance(afterAccountNumber + 1);
+            while (candidate >= 0) {
+                // Leapfrog: move every other list to the candidate; if one overshoots, skip ahead to it
+                int next = candidate;
+                for (int i = 1; i < joined.size() && next == candidate; i++) {
+                    next = joined.get(i).advance(candidate);
+                    if (next < 0) {
+                        return new Page(results, false);
+                    }
+                }
+                if (next != candidate) {
+                    candidate = joined.get(0).advance(next);
+                    continue;
+                }
+                Account account = accounts.get(candidate);
+                if (account != null && hasWordsStartingWith(account, checked)) {
+                    if (results.size() == limit) {
+                        return new Page(results, true);
+                    }
+                    results.add(account);
+                }
+                if (candidate == Integer.MAX_VALUE) {
+                    break; // The largest account number, candidate + 1 would wrap around
+                }
+                candidate = joined.get(0).advance(candidate + 1);
+            }
+            return new Page(results, false);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int tokenCount() {
+        long stamp = lock.readLock();
+        try {
+            return tokens.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private NavigableMap<String, Postings> withPrefix(String prefix) {
+        return tokens.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    // True if, for every prefix, some word of the account's name or address starts with it
+    private static boolean hasWordsStartingWith(Account account, List<String> prefixes) {
+        for (String prefix : prefixes) {
+            if (!hasWordStartingWith(account.getFullName(), prefix) && !hasWordStartingWith(account.getAddress(), prefix)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Same test as tokenize then startsWith, without building the words
+    private static boolean hasWordStartingWith(String text, String prefix) {
+        if (text == null) {
+            return false;
+        }
+        boolean wordStart = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                wordStart = true;
+                continue;
+            }
+            if (wordStart && text.regionMatches(true, i, prefix, 0, prefix.length())) {
+                return true; // Query tokens are all letters and digits, so the match stays inside the word
+            }
+            wordStart = false;
+        }
+        return false;
+    }
+
+    private static List<String> tokens(Account account) {
+        List<String> words = tokenize(account.getFullName());
+        for (String word : tokenize(account.getAddress())) {
+            if (!words.contains(word)) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    // Lowercase runs of letters and digits, without duplicates
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String word = lower.substring(start, i);
+                if (!words.contains(word)) {
+                    words.add(word);
+                }
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    // Several postings lists merged in ascending order without duplicates
+    private static final class Merge {
+        private final PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) -> Integer.compare(a[0], b[0])); // {number, list, position}
+        final Postings[] lists;
+        final long size; // Total account numbers, duplicates included
+        private int position; // In lists[0], when it is the only list
+
+        Merge(Postings[] lists) {
+            this.lists = lists;
+            long total = 0;
+            for (int i = 0; i < lists.length; i++) {
+                total += lists[i].size;
+                if (lists.length > 1) {
+                    heads.add(new int[] {lists[i].numbers[0], i, 0}); // Lists in the index are never empty
+                }
+            }
+            this.size = total;
+        }
+
+        // Smallest account number at or above target, or -1 if there is none
+        int advance(int target) {
+            if (lists.length == 1) { // The usual case for a whole word, no need for the queue
+                Postings list = lists[0];
+                position = list.firstAtLeast(target, position);
+                return position < list.size ? list.numbers[position] : -1;
+            }
+            while (!heads.isEmpty() && heads.peek()[0] < target) {
+                int[] head = heads.poll();
+                Postings list = lists[head[1]];
+                int at = list.firstAtLeast(target, head[2]);
+                if (at < list.size) {
+                    head[0] = list.numbers[at];
+                    head[2] = at;
+                    heads.add(head);
+                }
+            }
+            return heads.isEmpty() ? -1 : heads.peek()[0];
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package bankingsystem;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.locks.StampedLock;
+
+// Account repository keyed by account number, an open-addressing table with optimistic reads
+public class AccountStore {
+    private static final int INITIAL_CAPACITY = 64; // Must be a power of two
+    private static final float LOAD_FACTOR = 0.5f; // Keep probe sequences short
+
+    private final StampedLock lock = new StampedLock();
+    private Table table = new Table(INITIAL_CAPACITY);
+    private int size;
+    private LocalDate lastEndOfDay; // Guarded by "this"
+
+    // Keys and values live together so a reader always sees arrays of the same length
+    private static final class Table {
+        final int[] keys;
+        final Account[] values; // null marks a free slot
+        final int mask;
+
+        Table(int capacity) {
+            keys = new int[capacity];
+            values = new Account[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    // Find an account by account number
+    public Account get(int accountNumber) {
+        long stamp = lock.tryOptimisticRead();
+        Account account = find(table, accountNumber);
+        if (!lock.validate(stamp)) {
+            // A writer got in the way, retry under the read lock
+            stamp = lock.readLock();
+            try {
+                account = find(table, accountNumber);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return account;
+    }
+
+    // Add an account, replacing any account with the same number
+    public Account put(Account account) {
+        long stamp = lock.writeLock();
+        try {
+            if (size + 1 > table.keys.length * LOAD_FACTOR) {
+                resize(table.keys.length * 2);
+            }
+            Account previous = insert(table, account);
+            if (previous == null) {
+                size++;
+            }
+            return previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Add every account in the collection
+    public void putAll(Collection<Account> accountsToAdd) {
+        for (Account account : accountsToAdd) {
+            put(account);
+        }
+    }
+
+    // Remove an account by account number, returns the removed account or null
+    public Account remove(int accountNumber) {
+        long stamp = lock.writeLock();
+        try {
+            Table t = table;
+            int slot = indexOf(t, accountNumber);
+            if (slot < 0) {
+                return null;
+            }
+            Account removed = t.values[slot];
+            deleteSlot(t, slot);
+            size--;
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Highest account number in the store, or 0 if it is empty
+    public int maxAccountNumber() {
+        long stamp = lock.readLock();
+        try {
+            int max = 0;
+            for (int i = 0; i < table.values.length; i++) {
+                if (table.values[i] != null) {
+                    max = Math.max(max, table.keys[i]);
+                }
+            }
+            return max;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // The last day whose end-of-day run is in these balances, or null
+    public synchronized LocalDate getLastEndOfDay() {
+        return lastEndOfDay;
+    }
+
+    public synchronized void endOfDayDone(LocalDate day) {
+        if (lastEndOfDay == null || day.isAfter(lastEndOfDay)) {
+            lastEndOfDay = day;
+        }
+    }
+
+    // Copy of all accounts, used when saving to file
+    public ArrayList<Account> toList() {
+        long stamp = lock.readLock();
+        try {
+            ArrayList<Account> list = new ArrayList<>(size);
+            for (Account account : table.values) {
+                if (account != null) {
+                    list.add(account);
+                }
+            }
+            return list;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Spread sequential account numbers over the whole table
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Probe for a key without the lock, the caller validates the result afterwards
+    private static Account find(Table t, int accountNumber) {
+        int slot = hash(accountNumber) & t.mask;
+        for (int probes = 0; probes <= t.mask; probes++) {
+            Account account = t.values[slot];
+            if (account == null) {
+                return null;
+            }
+            if (t.keys[slot] == accountNumber) {
+                return account;
+            }
+            slot = (slot + 1) & t.mask;
+        }
+        return null;
+    }
+
+    private static int indexOf(Table t, int accountNumber) {
+        int slot = hash(accountNumber) & t.mask;
+        while (t.values[slot] != null) {
+            if (t.keys[slot] == accountNumber) {
+                return slot;
+            }
+            slot = (slot + 1) & t.mask;
+        }
+        return -1;
+    }
+
+    private static Account insert(Table t, Account account) {
+        int accountNumber = account.getAccountNumber();
+        int slot = hash(accountNumber) & t.mask;
+        while (t.values[slot] != null) {
+            if (t.keys[slot] == accountNumber) {
+                Account previous = t.values[slot];
+                t.values[slot] = account;
+                return previous;
+            }
+            slot = (slot + 1) & t.mask;
+        }
+        t.keys[slot] = accountNumber;
+        t.values[slot] = account;
+        return null;
+    }
+
+    // Backward-shift deletion keeps probe chains intact without tombstones
+    private static void deleteSlot(Table t, int slot) {
+        int free = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & t.mask;
+            if (t.values[next] == null) {
+                break;
+            }
+            int home = hash(t.keys[next]) & t.mask;
+            // Move the entry back only if its home slot is not between the free slot and its current slot
+            boolean inRange = free <= next ? (free < home && home <= next) : (free < home || home <= next);
+            if (!inRange) {
+                t.keys[free] = t.keys[next];
+                t.values[free] = t.values[next];
+                free = next;
+            }
+        }
+        t.keys[free] = 0;
+        t.values[free] = null;
+    }
+
+    private void resize(int newCapacity) {
+        Table old = table;
+        Table grown = new Table(newCapacity);
+        for (int i = 0; i < old.values.length; i++) {
+            if (old.values[i] != null) {
+                insert(grown, old.values[i]);
+            }
+        }
+        table = grown;
+    }
+}
@@ -0,0 +1,111 @@
+package bankingsystem;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Runs PIN hashing on a pool of background threads, with a session cache and the PinThrottle in front
+public class AuthService {
+    private final ThreadPoolExecutor hashingPool;
+    private final SessionCache sessions;
+    private final PinThrottle throttle; // null for no limit
+
+    public AuthService(int threads, int queueSize, SessionCache sessions) {
+        this(threads, queueSize, sessions, null);
+    }
+
+    public AuthService(int threads, int queueSize, SessionCache sessions, PinThrottle throttle) {
+        this.sessions = sessions;
+        this.throttle = throttle;
+        AtomicInteger threadNumber = new AtomicInteger();
+        hashingPool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "pin-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    // One hashing thread per core, sessions last banking.sessionTtlSeconds (default 2 minutes)
+    public AuthService() {
+        this(Runtime.getRuntime().availableProcessors(), 1024,
+                new SessionCache(Long.getLong("banking.sessionTtlSeconds", 120) * 1000, 10000), new PinThrottle());
+    }
+
+    // Check a PIN entered at this terminal, see below
+    public CompletableFuture<Boolean> verifyPin(Account account, String pin) {
+        return verifyPin(account, pin, null);
+    }
+
+    // Check a PIN in the background, false for a wrong or missing PIN; caller is null for this terminal
+    public CompletableFuture<Boolean> verifyPin(Account account, String pin, String caller) {
+        long start = Metrics.startTimer(Metrics.Operation.VERIFY_PIN);
+        if (pin == null) {
+            Metrics.record(Metrics.Operation.VERIFY_PIN, Metrics.Outcome.INVALID_PIN, start);
+            return CompletableFuture.completedFuture(false); // PIN dialog was cancelled
+        }
+        if (sessions.isValid(account.getAccountNumber(), pin)) {
+            Metrics.record(Metrics.Operation.VERIFY_PIN, Metrics.Outcome.SUCCESS, start);
+            return CompletableFuture.completedFuture(true);
+        }
+        int accountNumber = account.getAccountNumber();
+        if (throttle != null) {
+            long waitMillis = throttle.tryAcquire(accountNumber, caller);
+            if (waitMillis > 0) {
+                Metrics.record(Metrics.Operation.VERIFY_PIN, Metrics.Outcome.THROTTLED, start);
+                return CompletableFuture.failedFuture(new RejectedExecutionException(
+                        "Too many PIN attempts, try again in " + (waitMillis + 999) / 1000 + " seconds"));
+            }
+        }
+        CompletableFuture<Boolean> result = submit(() -> {
+            boolean valid = account.verifyPin(pin);
+            if (valid) {
+                sessions.open(accountNumber, pin);
+            }
+            return valid;
+        });
+        result.whenComplete((valid, error) -> {
+            if (throttle != null) {
+                throttle.release(accountNumber, caller, error == null && !valid);
+            }
+            Metrics.record(Metrics.Operation.VERIFY_PIN,
+                    error != null ? Metrics.Outcome.ERROR : valid ? Metrics.Outcome.SUCCESS : Metrics.Outcome.INVALID_PIN, start);
+        });
+        return result;
+    }
+
+    // Forget the account's session, e.g. because it was closed
+    public void endSession(int accountNumber) {
+        sessions.invalidate(accountNumber);
+    }
+
+    // Run other hashing work, such as creating an account, on the same pool
+    public <T> CompletableFuture<T> submit(Supplier<T> work) {
+        try {
+            return CompletableFuture.supplyAsync(work, hashingPool);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Too many PIN checks in progress, try again", e));
+        }
+    }
+
+    // submit() counted against the caller's checks in flight, refused with RejectedExecutionException over it
+    public <T> CompletableFuture<T> submit(Supplier<T> work, String caller) {
+        if (throttle == null || caller == null) {
+            return submit(work);
+        }
+        if (throttle.tryAcquire(caller) > 0) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Too many requests in progress, try again"));
+        }
+        CompletableFuture<T> result = submit(work);
+        result.whenComplete((value, error) -> throttle.release(caller));
+        return result;
+    }
+
+    public void shutdown() {
+        hashingPool.shutdown();
+    }
+}
@@ -0,0 +1,417 @@
+package bankingsystem;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+// Serves the account operations over TCP on one selector thread, one '|'-separated request and response per line:
+//   CREATE|fullName|address|birthday|gender|accountType|initialDeposit|pin  -> OK|accountNumber
+//   BALANCE|accountNumber|pin                                                -> OK|balance
+//   DEPOSIT|accountNumber|pin|amount                                         -> OK|balance
+//   WITHDRAW|accountNumber|pin|amount                                        -> OK|balance
+//   TRANSFER|accountNumber|pin|toAccountNumber|amount                        -> OK|balance
+//   INFO|accountNumber|pin  -> OK|accountNumber|fullName|address|birthday|gender|accountType|balance
+//   CLOSE|accountNumber|pin                                                  -> OK
+// A request that fails is answered with ERROR|reason.
+public class BankServer {
+    private static final int MAX_LINE = 4096; // Longest request accepted
+    private static final int MAX_PENDING = 64; // Unanswered requests per connection before reading pauses
+    private static final String INVALID_LOGIN = "ERROR|Invalid account number or PIN";
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final AuthService authService;
+    private final ExecutorService workers;
+    private final Queue<Connection> completed = new ConcurrentLinkedQueue<>(); // Connections with responses ready to send
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private volatile boolean running = true;
+
+    private final class Connection {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final String caller; // Client address, wrong PINs are limited per address as well as per account
+        final ByteBuffer in = ByteBuffer.allocate(MAX_LINE);
+        final ArrayDeque<CompletableFuture<String>> pending = new ArrayDeque<>(); // Responses in request order
+        ByteBuffer out = ByteBuffer.allocate(1024);
+        CompletableFuture<?> last = CompletableFuture.completedFuture(null); // Previous request, the next one runs after it
+        boolean endOfInput;
+
+        Connection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.caller = ((InetSocketAddress) channel.getRemoteAddress()).getAddress().getHostAddress();
+            this.key = channel.register(selector, SelectionKey.OP_READ, this);
+        }
+    }
+
+    public BankServer(InetSocketAddress address, AuthService authService, int workerThreads) throws IOException {
+        this.authService = authService;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "server-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    // Serve until stop() is called
+    public void run() throws IOException {
+        try {
+            while (running) {
+                selector.select();
+                Connection connection;
+                while ((connection = completed.poll()) != null) {
+                    if (connection.key.isValid()) {
+                        sendCompleted(connection);
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        try {
+                            accept();
+                        } catch (IOException e) {
+                            System.err.println("Could not accept a connection: " + e.getMessage()); // e.g. out of file handles
+                        }
+                        continue;
+                    }
+                    connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            read(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(connection);
+                        }
+                    } catch (IOException e) {
+                        close(connection); // Client went away
+                    }
+                }
+            }
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+            stopped.countDown();
+        }
+    }
+
+    // Stop accepting and close all connections, then let running operations finish
+    public void stop() {
+        running = false;
+        selector.wakeup();
+        try {
+            stopped.await(5, TimeUnit.SECONDS);
+            workers.shutdown();
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true); // Responses are small, don't hold them back
+            new Connection(channel);
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        if (connection.channel.read(connection.in) < 0) {
+            connection.endOfInput = true; // Answer what was already sent, then close
+        }
+        startRequests(connection);
+    }
+
+    // Start every complete line in the input buffer, as long as the pending limit allows
+    private void startRequests(Connection connection) throws IOException {
+        ByteBuffer in = connection.in;
+        in.flip();
+        while (connection.pending.size() < MAX_PENDING) {
+            int end = indexOf(in, (byte) '\n');
+            if (end < 0) {
+                break;
+            }
+            byte[] bytes = new byte[end - in.position()];
+            in.get(bytes);
+            in.get(); // The newline
+            String line = new String(bytes, StandardCharsets.UTF_8).strip();
+            if (!line.isEmpty()) {
+                start(connection, line);
+            }
+        }
+        in.compact();
+        if (!in.hasRemaining() && connection.pending.size() < MAX_PENDING) {
+            // A full buffer without a newline, the client isn't speaking this protocol
+            send(connection, "ERROR|Request too long");
+            connection.endOfInput = true;
+            in.clear();
+        }
+        updateInterest(connection);
+    }
+
+    private void start(Connection connection, String line) {
+        CompletableFuture<String> response = connection.last
+                .handle((result, error) -> null)
+                .thenCompose(ignored -> handle(line, connection.caller));
+        connection.last = response;
+        connection.pending.add(response);
+        response.whenComplete((result, error) -> {
+            completed.add(connection);
+            selector.wakeup();
+        });
+    }
+
+    // Send the responses that are ready, stopping at the first one still running so the order holds
+    private void sendCompleted(Connection connection) {
+        boolean sent = false;
+        while (!connection.pending.isEmpty() && connection.pending.peek().isDone()) {
+            CompletableFuture<String> response = connection.pending.poll();
+            String line;
+            try {
+                line = response.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                line = "ERROR|" + clean(cause.getMessage());
+            }
+            append(connection, line);
+            sent = true;
+        }
+        if (!sent) {
+            return;
+        }
+        try {
+            write(connection);
+            if (connection.key.isValid() && connection.in.position() > 0) {
+                startRequests(connection); // Lines held back by the pending limit
+            }
+        } catch (IOException e) {
+            close(connection);
+        }
+    }
+
+    private void send(Connection connection, String line) throws IOException {
+        append(connection, line);
+        write(connection);
+    }
+
+    private void append(Connection connection, String line) {
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        if (connection.out.remaining() < bytes.length) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(connection.out.capacity() * 2, connection.out.position() + bytes.length));
+            connection.out.flip();
+            larger.put(connection.out);
+            connection.out = larger;
+        }
+        connection.out.put(bytes);
+    }
+
+    private void write(Connection connection) throws IOException {
+        ByteBuffer out = connection.out;
+        out.flip();
+        connection.channel.write(out);
+        out.compact();
+        updateInterest(connection);
+    }
+
+    private void updateInterest(Connection connection) {
+        if (!connection.key.isValid()) {
+            return;
+        }
+        if (connection.endOfInput && connection.pending.isEmpty() && connection.out.position() == 0) {
+            close(connection); // Everything the client sent has been answered
+            return;
+        }
+        int ops = 0;
+        if (!connection.endOfInput && connection.pending.size() < MAX_PENDING) {
+            ops |= SelectionKey.OP_READ;
+        }
+        if (connection.out.position() > 0) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        connection.key.interestOps(ops);
+    }
+
+    private void close(Connection connection) {
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            // Nothing left to do with it
+        }
+    }
+
+    private static int indexOf(ByteBuffer buffer, byte value) {
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private CompletableFuture<String> handle(String line, String caller) {
+        String[] fields = line.split("\\|", -1);
+        try {
+            switch (fields[0].trim().toUpperCase()) {
+                case "CREATE":
+                    return create(fields, caller);
+                case "BALANCE":
+                    checkFields(fields, 3);
+                    return withPin(fields, caller, account -> "OK|" + Money.format(account.getBalanceCents()));
+                case "DEPOSIT": {
+                    checkFields(fields, 4);
+                    long amount = positiveAmount(fields[3]);
+                    return withPin(fields, caller, account -> {
+                        account.deposit(amount);
+                        return "OK|" + Money.format(account.getBalanceCents());
+                    });
+                }
+                case "WITHDRAW": {
+                    checkFields(fields, 4);
+                    long amount = positiveAmount(fields[3]);
+                    return withPin(fields, caller, account -> account.tryWithdraw(amount)
+                            ? "OK|" + Money.format(account.getBalanceCents())
+                            : "ERROR|Insufficient funds");
+                }
+                case "TRANSFER": {
+                    checkFields(fields, 5);
+                    int toNumber = accountNumber(fields[3]);
+                    long amount = positiveAmount(fields[4]);
+                    return withPin(fields, caller, account -> {
+                        Account to = BankingSystem.findAccount(toNumber);
+                        if (to == null || to == account) {
+                            return "ERROR|Invalid destination account";
+                        }
+                        return Account.transfer(account, to, amount)
+                                ? "OK|" + Money.format(account.getBalanceCents())
+                                : "ERROR|Insufficient funds";
+                    });
+                }
+                case "INFO":
+                    checkFields(fields, 3);
+                    return withPin(fields, caller, account -> "OK|" + account.getAccountNumber() + "|" + clean(account.getFullName())
+                            + "|" + clean(account.getAddress()) + "|" + clean(account.getBirthday()) + "|" + clean(account.getGender())
+                            + "|" + clean(account.getAccountType()) + "|" + Money.format(account.getBalanceCents()));
+                case "CLOSE":
+                    checkFields(fields, 3);
+                    return withPin(fields, caller, account -> {
+                        BankingSystem.removeAccount(account);
+                        return "OK";
+                    });
+                default:
+                    return CompletableFuture.completedFuture("ERROR|Unknown request " + clean(fields[0]));
+            }
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture("ERROR|" + clean(e.getMessage()));
+        }
+    }
+
+    private CompletableFuture<String> create(String[] fields, String caller) {
+        checkFields(fields, 8);
+        String fullName = fields[1].trim();
+        String address = fields[2].trim();
+        String birthday = fields[3].trim();
+        String gender = fields[4].trim();
+        String accountType = fields[5].trim();
+        String pin = fields[7].trim();
+        long initialDeposit;
+        try {
+            initialDeposit = Money.parse(fields[6]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid initial deposit");
+        }
+        String problem = BankingSystem.checkNewAccount(birthday, gender, accountType, initialDeposit, pin);
+        if (problem != null) {
+            throw new IllegalArgumentException(problem);
+        }
+        return authService.submit(() -> new Account(fullName, address, birthday, gender, accountType, initialDeposit, pin), caller)
+                .thenApplyAsync(account -> {
+                    BankingSystem.addAccount(account);
+                    return "OK|" + account.getAccountNumber();
+                }, workers);
+    }
+
+    // Verify the PIN, then run the operation on a worker thread
+    private CompletableFuture<String> withPin(String[] fields, String caller, Function<Account, String> operation) {
+        int accountNumber = accountNumber(fields[1]);
+        Account account = BankingSystem.findAccount(accountNumber);
+        if (account == null) {
+            return CompletableFuture.completedFuture(INVALID_LOGIN);
+        }
+        return authService.verifyPin(account, fields[2].trim(), caller).thenApplyAsync(valid -> {
+            if (!valid) {
+                return INVALID_LOGIN;
+            }
+            if (BankingSystem.findAccount(accountNumber) != account) {
+                return INVALID_LOGIN; // Closed while the PIN was being checked
+            }
+            return operation.apply(account);
+        }, workers);
+    }
+
+    private static void checkFields(String[] fields, int count) {
+        if (fields.length != count) {
+            throw new IllegalArgumentException(fields[0].trim().toUpperCase() + " takes " + (count - 1) + " fields");
+        }
+    }
+
+    private static int accountNumber(String text) {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid account number");
+        }
+    }
+
+    private static long positiveAmount(String text) {
+        long amount;
+        try {
+            amount = Money.parse(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid amount");
+        }
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        return amount;
+    }
+
+    // Keep a value from breaking the one-line, '|'-separated response
+    private static String clean(String value) {
+        return String.valueOf(value).replace('|', '/').replace('\n', ' ').replace('\r', ' ');
+    }
+}
@@ -0,0 +1,1210 @@
+package bankingsystem;
+
+import java.awt.*;
+import java.io.*;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import javax.swing.*;
+
+
+public class BankingSystem extends JFrame {
+
+    private static AccountStore accounts = new AccountStore();
+    private static final String ACCOUNTS_FILE = "accounts.dat";
+    private static final String JOURNAL_FILE = "accounts.journal";
+    private static final String SEQUENCE_FILE = "accounts.seq";
+    // Account numbers reserved from accounts.seq at a time
+    private static final int ACCOUNT_NUMBER_BLOCK = Integer.getInteger("banking.accountNumberBlock", 100);
+    // How long the journal waits to batch records into one fsync, 0 = sync immediately
+    private static final long GROUP_COMMIT_MILLIS = Long.getLong("banking.groupCommitMillis", 0);
+    private static TransactionJournal journal;
+    private static long snapshotGeneration; // Journal generation that accounts.dat was saved for
+    private static AccountFile accountFile;
+    // Leave names, addresses, birthdays and genders in accounts.dat until asked for, see ProfileCache
+    private static final boolean LAZY_PROFILES = Boolean.getBoolean("banking.lazyProfiles");
+    private static final int PROFILE_CACHE_SIZE = Integer.getInteger("banking.profileCacheSize", 10_000);
+    // How often accounts.dat is checkpointed in the background, 0 = only on Exit
+    private static final long CHECKPOINT_SECONDS = Long.getLong("banking.checkpointSeconds", 300);
+    private static Checkpointer checkpointer;
+    private static AccountSearchIndex searchIndex; // Customer search, built by startSearchIndex
+    private static TransactionHistory history; // Statements, since startHistory
+    // End of day: Savings interest in percent a year, and the fee for Current accounts below the minimum balance
+    private static final BigDecimal SAVINGS_INTEREST_RATE = new BigDecimal(System.getProperty("banking.savingsInterestRate", "0.25"));
+    private static final long CURRENT_MINIMUM_BALANCE = Money.parse(System.getProperty("banking.currentMinimumBalance", "10000"));
+    private static final long BELOW_MINIMUM_FEE = Money.parse(System.getProperty("banking.belowMinimumFee", "300"));
+    // Fork/join threads for the end-of-day job; they wait on the journal, so more than the cores
+    private static final int END_OF_DAY_THREADS = Integer.getInteger("banking.endOfDayThreads", 8);
+    // Local time to run end of day every day, e.g. 23:30; unset = only with --end-of-day
+    private static final String END_OF_DAY_TIME = System.getProperty("banking.endOfDayTime");
+    private static final AuthService authService = new AuthService(); // PIN hashing happens here, never on the event thread
+    private static final Queue<Integer> closedSinceSave = new ConcurrentLinkedQueue<>(); // Closed accounts still live in accounts.dat
+    private static final int DEFAULT_PORT = 9090;
+    // Threads that run server requests; they may wait on the journal, so more than the cores
+    private static final int SERVER_WORKERS = Integer.getInteger("banking.serverWorkers", 16);
+    // Port standbys connect to for the journal, see ReplicationServer; unset = no replication
+    private static final Integer REPLICATION_PORT = Integer.getInteger("banking.replicationPort");
+    // Wait for a standby to have each change before it returns, and for how long at most
+    private static final boolean REPLICATION_SYNC = Boolean.getBoolean("banking.replicationSync");
+    private static final long REPLICATION_TIMEOUT_MILLIS = Long.getLong("banking.replicationTimeoutMillis", 1000);
+    private static ReplicationServer replication;
+    // --soak: operation mix, account popularity skew (Zipf exponent), accounts to start with, progress interval
+    private static final String SOAK_MIX = System.getProperty("banking.soakMix", "balance=40,deposit=25,withdraw=25,create=5,close=5");
+    private static final double SOAK_ZIPF = Double.parseDouble(System.getProperty("banking.soakZipf", "1.0"));
+    private static final int SOAK_ACCOUNTS = Integer.getInteger("banking.soakAccounts", 1000);
+    private static final long SOAK_REPORT_SECONDS = Long.getLong("banking.soakReportSeconds", 60);
+    protected CardLayout cardLayout;
+    protected JPanel cardPanel;
+
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            System.exit(runBatch(args));
+        }
+        if (args.length > 0 && args[0].equals("--server")) {
+            System.exit(runServer(args));
+        }
+        if (args.length > 0 && args[0].equals("--end-of-day")) {
+            System.exit(runEndOfDay());
+        }
+        if (args.length > 0 && args[0].equals("--standby")) {
+            System.exit(runStandby(args));
+        }
+        if (args.length > 0 && args[0].equals("--soak")) {
+            System.exit(runSoak(args));
+        }
+        SwingUtilities.invokeLater(() -> new BankingSystem());
+    }
+
+    // Headless mode: BankingSystem --batch <transactions.csv> [results.csv]
+    private static int runBatch(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: BankingSystem --batch <transactions.csv> [results.csv]");
+            return 2;
+        }
+        Path input = Paths.get(args[1]);
+        Path output = Paths.get(args.length > 2 ? args[2] : args[1] + ".results.csv");
+        try {
+            Metrics.register();
+            loadAccounts();
+            startJournal();
+            startCheckpoints();
+            BatchProcessor.Summary summary = new BatchProcessor(accounts, Runtime.getRuntime().availableProcessors()).process(input, output);
+            saveAccounts();
+            System.out.println(summary + ", results written to " + output);
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Batch failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    // Headless mode: BankingSystem --end-of-day, pays interest and takes fees for today, once
+    private static int runEndOfDay() {
+        try {
+            Metrics.register();
+            loadAccounts();
+            startJournal();
+            EndOfDayJob.Result result = endOfDay(LocalDate.now());
+            saveAccounts();
+            System.out.println(result != null ? "End of day: " + result : "End of day already ran for " + LocalDate.now());
+            return 0;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("End of day failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    // Headless mode: BankingSystem --standby host:port, keeps a copy of that primary's accounts here
+    private static int runStandby(String[] args) {
+        int colon = args.length > 1 ? args[1].lastIndexOf(':') : -1;
+        int port;
+        try {
+            port = colon > 0 ? Integer.parseInt(args[1].substring(colon + 1)) : -1;
+        } catch (NumberFormatException e) {
+            port = -1;
+        }
+        if (port < 0) {
+            System.err.println("Usage: BankingSystem --standby <host:port>");
+            return 2;
+        }
+        try {
+            Standby standby = new Standby(new InetSocketAddress(args[1].substring(0, colon), port), Paths.get(""));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    standby.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing standby files: " + e.getMessage());
+                }
+            }));
+            standby.start();
+            while (true) {
+                Thread.sleep(10_000);
+                System.out.println(standby);
+            }
+        } catch (IOException e) {
+            System.err.println("Standby failed: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            return 0;
+        }
+    }
+
+    // Headless mode: BankingSystem --soak [tellers] [duration], exits with 1 if money wasn't conserved
+    private static int runSoak(String[] args) {
+        int tellers;
+        Duration duration;
+        try {
+            tellers = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+            duration = Duration.parse("PT" + (args.length > 2 ? args[2] : "1m").toUpperCase());
+        } catch (NumberFormatException | DateTimeParseException e) {
+            System.err.println("Usage: BankingSystem --soak [tellers] [duration, e.g. 90s, 30m or 8h]");
+            return 2;
+        }
+        try {
+            if (Files.exists(Paths.get(ACCOUNTS_FILE)) && Files.size(Paths.get(ACCOUNTS_FILE)) > 0
+                    || Files.exists(Paths.get(JOURNAL_FILE)) && Files.size(Paths.get(JOURNAL_FILE)) > TransactionJournal.HEADER_SIZE) {
+                System.err.println("The soak test opens, changes and closes accounts and saves them: run it in an empty directory, "
+                        + "not one with accounts in " + ACCOUNTS_FILE + " or " + JOURNAL_FILE);
+                return 2;
+            }
+            Metrics.register();
+            loadAccounts();
+            startJournal();
+            startAccountNumbers();
+            startCheckpoints();
+            startHistory();
+            SoakTest test = new SoakTest(accounts, authService, tellers, SoakTest.parseMix(SOAK_MIX), SOAK_ZIPF, SOAK_ACCOUNTS);
+            System.out.printf("Soak test: %d tellers for %s, mix %s, Zipf exponent %s%n", tellers, duration, SOAK_MIX, SOAK_ZIPF);
+            SoakTest.Result result = test.run(duration, SOAK_REPORT_SECONDS * 1000, System.out::println);
+            saveAccounts();
+            System.out.println(result);
+            long saved = 0;
+            try (AccountFile file = AccountFile.open(Paths.get(ACCOUNTS_FILE))) {
+                for (Account account : file.loadAccounts().toList()) {
+                    saved += account.getBalanceCents();
+                }
+            }
+            if (saved != result.actualTotal) {
+                System.out.println("SAVED TOTAL DIFFERS: " + ACCOUNTS_FILE + " holds " + Money.format(saved));
+            }
+            return result.isConsistent() && saved == result.actualTotal ? 0 : 1;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Soak test failed: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            return 1;
+        }
+    }
+
+    // Headless mode: BankingSystem --server [port], serves terminals until the process is stopped
+    private static int runServer(String[] args) {
+        int port;
+        try {
+            port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        } catch (NumberFormatException e) {
+            System.err.println("Usage: BankingSystem --server [port]");
+            return 2;
+        }
+        String host = System.getProperty("banking.serverHost");
+        InetSocketAddress address = host != null ? new InetSocketAddress(host, port) : new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        try {
+            Metrics.register();
+            loadAccounts();
+            startJournal();
+            startAccountNumbers();
+            startCheckpoints();
+            startReplication();
+            startHistory();
+            startEndOfDay();
+            BankServer server = new BankServer(address, authService, SERVER_WORKERS);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop();
+                try {
+                    saveAccounts();
+                } catch (IOException e) {
+                    System.err.println("Error saving accounts: " + e.getMessage());
+                }
+            }));
+            System.out.println("Serving on " + server.getAddress());
+            server.run();
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Server failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    public BankingSystem() {
+        Metrics.register(); // Operation counts and latencies over JMX, see Metrics
+        loadOrSaveAccounts(false); // Load accounts from file
+        openJournal(); // Replay changes made since the last save and start logging new ones
+        openAccountNumbers();
+        startCheckpoints();
+        openReplication();
+        startSearchIndex();
+        startHistory();
+        startEndOfDay();
+
+        setTitle("Galang-Peralta Banking Corporation");
+        setSize(600, 400);
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setLayout(new BorderLayout());
+
+        cardLayout = new CardLayout();
+        cardPanel = new JPanel(cardLayout);
+
+        // Adding all panels using a helper method
+        addPanelToLayout(createMainMenuPanel(), "Main Menu");
+        addPanelToLayout(new CreateAccountPanel(this), "Create Account");
+        addPanelToLayout(new BalanceInquiryPanel(this), "Balance Inquiry");
+        addPanelToLayout(new DepositPanel(this), "Deposit");
+        addPanelToLayout(new WithdrawPanel(this), "Withdraw");
+        addPanelToLayout(new TransferPanel(this), "Transfer");
+        addPanelToLayout(new AccountInfoPanel(this), "Account Information");
+        addPanelToLayout(new CloseAccountPanel(this), "Close Account");
+        addPanelToLayout(new SearchPanel(this), "Search Customers");
+        addPanelToLayout(new StatementPanel(this), "Statement");
+
+        add(cardPanel, BorderLayout.CENTER);
+        cardLayout.show(cardPanel, "Main Menu");
+
+        setVisible(true);
+    }
+
+    // Method to add panels to the CardLayout
+    private void addPanelToLayout(JPanel panel, String name) {
+        cardPanel.add(panel, name);
+    }
+
+    // Check the PIN on the hashing pool, the button stays disabled until the result is back
+    private void verifyPinAsync(JComponent panel, JButton button, Account account, String pin, Consumer<Boolean> onResult) {
+        button.setEnabled(false);
+        authService.verifyPin(account, pin).whenComplete((valid, error) -> SwingUtilities.invokeLater(() -> {
+            button.setEnabled(true);
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                JOptionPane.showMessageDialog(panel, "Could not check PIN: " + cause.getMessage());
+            } else {
+                onResult.accept(valid);
+            }
+        }));
+    }
+
+    // Check the PIN and run operation on the hashing pool, then show its message (null for a wrong PIN)
+    private void withPinAsync(JComponent panel, JButton button, Account account, String pin,
+                              Function<Account, String> operation, Consumer<String> onResult) {
+        button.setEnabled(false);
+        authService.verifyPin(account, pin)
+                .thenCompose(valid -> valid ? authService.submit(() -> operation.apply(account)) : CompletableFuture.completedFuture((String) null))
+                .whenComplete((message, error) -> SwingUtilities.invokeLater(() -> {
+                    button.setEnabled(true);
+                    if (error != null) {
+                        Throwable cause = error.getCause() != null ? error.getCause() : error;
+                        JOptionPane.showMessageDialog(panel, "Could not complete: " + cause.getMessage());
+                    } else {
+                        onResult.accept(message);
+                    }
+                }));
+    }
+
+    private void openJournal() {
+        try {
+            startJournal();
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Error opening journal, changes will only be saved on Exit: " + e.getMessage());
+        }
+    }
+
+    private void openReplication() {
+        try {
+            startReplication();
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Error starting replication, standbys can't connect: " + e.getMessage());
+        }
+    }
+
+    private void openAccountNumbers() {
+        try {
+            startAccountNumbers();
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Error opening " + SEQUENCE_FILE + ": " + e.getMessage());
+            Account.setAccountNumbers(new AccountNumberAllocator(accounts.maxAccountNumber() + 1)); // Still above every loaded account
+        }
+    }
+
+    private void loadOrSaveAccounts(boolean save) {
+        try {
+            if (save) {
+                saveAccounts();
+            } else {
+                loadAccounts();
+            }
+        } catch (IOException e) {
+            if (!save) {
+                JOptionPane.showMessageDialog(this, "Error loading accounts: " + e.getMessage());
+            }
+            if (save) {
+                JOptionPane.showMessageDialog(this, "Error saving accounts: " + e.getMessage());
+            }
+        }    
+    }
+
+    // Replay changes made since the last save and start logging new ones
+    static void startJournal() throws IOException {
+        Path journalFile = Paths.get(JOURNAL_FILE);
+        Checkpointer.deleteSegments(journalFile, snapshotGeneration); // Already in accounts.dat
+        // Segments left by a checkpoint that didn't finish come first, then the live journal
+        long generation = snapshotGeneration;
+        while (Files.exists(TransactionJournal.segmentFile(journalFile, generation))) {
+            replayJournal(TransactionJournal.segmentFile(journalFile, generation), generation);
+            generation++;
+        }
+        replayJournal(journalFile, generation);
+        journal = new TransactionJournal(journalFile, generation, GROUP_COMMIT_MILLIS);
+        Account.setJournal(journal);
+    }
+
+    private static void replayJournal(Path file, long generation) throws IOException {
+        // Skip accounts whose slot in accounts.dat was already saved past this generation
+        TransactionJournal.replay(file, generation, accounts,
+                accountNumber -> accountFile != null && accountFile.generationOf(accountNumber) > generation);
+    }
+
+    // Checkpoint accounts.dat in the background every banking.checkpointSeconds
+    static void startCheckpoints() {
+        if (journal == null || CHECKPOINT_SECONDS <= 0) {
+            return;
+        }
+        checkpointer = new Checkpointer(Paths.get(JOURNAL_FILE), journal);
+        checkpointer.start(() -> {
+            try {
+                checkpoint();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Checkpoint failed, will retry: " + e.getMessage()); // The journal still has everything
+            }
+        }, CHECKPOINT_SECONDS * 1000);
+    }
+
+    // Ship the journal to standbys on banking.replicationPort, if it is set
+    static void startReplication() throws IOException {
+        if (journal == null || REPLICATION_PORT == null) {
+            return;
+        }
+        String host = System.getProperty("banking.replicationHost");
+        InetSocketAddress address = host != null ? new InetSocketAddress(host, REPLICATION_PORT)
+                : new InetSocketAddress(InetAddress.getLoopbackAddress(), REPLICATION_PORT);
+        // Checkpoints and saves hold the class lock, so accounts.dat and the segments hold still while it is sent
+        replication = new ReplicationServer(address, journal, Paths.get(JOURNAL_FILE), Paths.get(ACCOUNTS_FILE),
+                BankingSystem.class, REPLICATION_SYNC, REPLICATION_TIMEOUT_MILLIS);
+        replication.start();
+        System.out.println("Standbys can connect on " + replication.getAddress() + (REPLICATION_SYNC ? ", synchronous" : ""));
+    }
+
+    // Bring accounts.dat up to date while operations carry on
+    static synchronized void checkpoint() throws IOException {
+        if (accountFile == null) {
+            return; // accounts.dat couldn't be loaded, the journal keeps everything until Exit
+        }
+        long start = Metrics.startTimer(Metrics.Operation.CHECKPOINT);
+        try {
+            snapshotGeneration = checkpointer.checkpoint(accountFile);
+        } catch (IOException | RuntimeException e) {
+            Metrics.record(Metrics.Operation.CHECKPOINT, Metrics.Outcome.ERROR, start);
+            throw e;
+        }
+        Metrics.record(Metrics.Operation.CHECKPOINT, Metrics.Outcome.SUCCESS, start);
+    }
+
+    // Index names and addresses for searchAccounts, call after the journal is replayed
+    static void startSearchIndex() {
+        searchIndex = AccountSearchIndex.build(accounts);
+    }
+
+    // A page of accounts matching every word of the query, pass the last account number for the next page
+    public static AccountSearchIndex.Page searchAccounts(String query, int afterAccountNumber, int limit) {
+        if (searchIndex == null) {
+            throw new IllegalStateException("Search index not started");
+        }
+        return searchIndex.search(query, afterAccountNumber, limit);
+    }
+
+    // Record every deposit, withdrawal and transfer from now on, for statements
+    static void startHistory() {
+        history = new TransactionHistory();
+        Account.setHistory(history);
+    }
+
+    // A page of an account's transactions from fromMillis to toMillis, pass the last sequence for the next page
+    public static TransactionHistory.Page statement(int accountNumber, long fromMillis, long toMillis, long afterSequence, int limit) {
+        if (history == null) {
+            throw new IllegalStateException("Transaction history not started");
+        }
+        return history.statement(accountNumber, fromMillis, toMillis, afterSequence, limit);
+    }
+
+    // Interest and fees for the given day, or null if they were already done for it
+    static synchronized EndOfDayJob.Result endOfDay(LocalDate day) {
+        LocalDate last = accounts.getLastEndOfDay(); // From accounts.dat, then the journal and runs since
+        if (last != null && !last.isBefore(day)) {
+            return null;
+        }
+        long start = Metrics.startTimer(Metrics.Operation.END_OF_DAY);
+        EndOfDayJob.Result result;
+        try {
+            // The journal record of the run carries the day until it is folded into accounts.dat
+            result = new EndOfDayJob(SAVINGS_INTEREST_RATE, CURRENT_MINIMUM_BALANCE, BELOW_MINIMUM_FEE, journal, END_OF_DAY_THREADS).run(accounts, day);
+        } catch (RuntimeException e) {
+            Metrics.record(Metrics.Operation.END_OF_DAY, Metrics.Outcome.ERROR, start);
+            throw e;
+        }
+        Metrics.record(Metrics.Operation.END_OF_DAY, Metrics.Outcome.SUCCESS, start);
+        return result;
+    }
+
+    // Run end of day every day at banking.endOfDayTime, if it is set
+    static void startEndOfDay() {
+        if (END_OF_DAY_TIME == null) {
+            return;
+        }
+        LocalTime time = LocalTime.parse(END_OF_DAY_TIME);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "end-of-day");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Runnable[] task = new Runnable[1];
+        task[0] = () -> {
+            try {
+                EndOfDayJob.Result result = endOfDay(LocalDate.now());
+                if (result != null) {
+                    System.out.println("End of day: " + result);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("End of day failed: " + e.getMessage());
+            }
+            scheduler.schedule(task[0], millisUntil(time), TimeUnit.MILLISECONDS); // Worked out again each day, days aren't all 24 hours
+        };
+        scheduler.schedule(task[0], millisUntil(time), TimeUnit.MILLISECONDS);
+    }
+
+    private static long millisUntil(LocalTime time) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = now.toLocalDate().atTime(time);
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        return Duration.between(now, next).toMillis();
+    }
+
+    // Hand out new account numbers from accounts.seq, call after the journal is replayed
+    static void startAccountNumbers() throws IOException {
+        int floor = Math.max(accounts.maxAccountNumber() + 1, AccountNumberAllocator.FIRST_NUMBER);
+        Account.setAccountNumbers(new AccountNumberAllocator(Paths.get(SEQUENCE_FILE), floor, ACCOUNT_NUMBER_BLOCK));
+    }
+
+    // Load accounts from accounts.dat, starting with no accounts if it can't be read
+    static void loadAccounts() throws IOException {
+        Path accountsFile = Paths.get(ACCOUNTS_FILE);
+        try {
+            if (!Files.exists(accountsFile) || Files.size(accountsFile) == 0) {
+                AccountFile.createEmpty(accountsFile);
+            } else if (AccountFile.isSerializedFormat(accountsFile)) {
+                AccountFile.convert(accountsFile); // One-time upgrade from the old ObjectOutputStream format
+            }
+            accountFile = AccountFile.open(accountsFile);
+            if (LAZY_PROFILES) {
+                Account.setProfiles(new ProfileCache(accountFile, PROFILE_CACHE_SIZE));
+                accounts = accountFile.loadAccountsWithoutProfiles();
+            } else {
+                accounts = accountFile.loadAccounts();
+            }
+            snapshotGeneration = accountFile.getGeneration();
+        } catch (IOException e) {
+            accounts = new AccountStore();
+            throw e;
+        }
+    }
+
+    // Save accounts: only changed accounts are written, in place
+    static synchronized void saveAccounts() throws IOException {
+        long start = Metrics.startTimer(Metrics.Operation.SAVE);
+        try {
+            writeAccounts();
+        } catch (IOException | RuntimeException e) {
+            Metrics.record(Metrics.Operation.SAVE, Metrics.Outcome.ERROR, start);
+            throw e;
+        }
+        Metrics.record(Metrics.Operation.SAVE, Metrics.Outcome.SUCCESS, start);
+    }
+
+    private static void writeAccounts() throws IOException {
+        long newGeneration = journal != null ? journal.getGeneration() + 1 : snapshotGeneration + 1;
+        ArrayList<Integer> closed = new ArrayList<>(closedSinceSave);
+        if (accountFile != null) {
+            accountFile.save(accounts.toList(), closed, newGeneration, accounts.getLastEndOfDay());
+        } else {
+            AccountFile.create(Paths.get(ACCOUNTS_FILE), accounts.toList(), newGeneration, accounts.getLastEndOfDay());
+        }
+        closedSinceSave.removeAll(closed);
+        snapshotGeneration = newGeneration;
+        if (journal != null) {
+            journal.reset(newGeneration); // Everything logged so far is now in accounts.dat
+            Checkpointer.deleteSegments(Paths.get(JOURNAL_FILE), newGeneration);
+        }
+    }
+
+    private JPanel createMainMenuPanel() {
+        JPanel mainMenuPanel = new JPanel(new GridLayout(5, 2));
+        String[] buttons = {"Create Account", "Balance Inquiry", "Deposit", "Withdraw", "Transfer", "Account Information", "Close Account", "Search Customers", "Statement", "Exit"};
+
+        for (String btnText : buttons) {
+            JButton button = new JButton(btnText);
+            mainMenuPanel.add(button);
+            button.addActionListener(e -> handleMenuSelection(btnText));
+        }
+        return mainMenuPanel;
+    }
+
+    private void handleMenuSelection(String selection) {
+        switch (selection) {
+            case "Create Account":
+                cardLayout.show(cardPanel, "Create Account");
+                break;
+            case "Balance Inquiry":
+                cardLayout.show(cardPanel, "Balance Inquiry");
+                break;
+            case "Deposit":
+                cardLayout.show(cardPanel, "Deposit");
+                break;
+            case "Withdraw":
+                cardLayout.show(cardPanel, "Withdraw");
+                break;
+            case "Transfer":
+                cardLayout.show(cardPanel, "Transfer");
+                break;
+            case "Account Information":
+                cardLayout.show(cardPanel, "Account Information");
+                break;
+            case "Close Account":
+                cardLayout.show(cardPanel, "Close Account");
+                break;
+            case "Search Customers":
+                cardLayout.show(cardPanel, "Search Customers");
+                break;
+            case "Statement":
+                cardLayout.show(cardPanel, "Statement");
+                break;
+            case "Exit":
+                loadOrSaveAccounts(true); // Save accounts to file
+                System.exit(0);
+                break;
+            default:
+                JOptionPane.showMessageDialog(this, "Invalid selection!");
+        }
+    }
+
+    // Rules for opening an account, returns null if they are met or else the reason they are not
+    static String checkNewAccount(String birthday, String gender, String accountType, long initialDeposit, String pin) {
+        if (!birthday.matches("\\d{2}/\\d{2}/\\d{4}")) {
+            return "Birthday must be in the format DD/MM/YYYY.";
+        }
+        if (!gender.equals("Male") && !gender.equals("Female")) {
+            return "Gender must be Male or Female.";
+        }
+        if (pin.length() != 6 || !pin.matches("\\d{6}")) {
+            return "PIN must be exactly 6 digits.";
+        }
+        if (accountType.equals("Savings")) {
+            if (initialDeposit < 5000_00) {
+                return "Minimum deposit for Savings Account is 5000.";
+            }
+        } else if (accountType.equals("Current")) {
+            if (initialDeposit < 10000_00) {
+                return "Minimum deposit for Current Account is 10000.";
+            }
+        } else {
+            return "Account type must be Savings or Current.";
+        }
+        return null;
+    }
+
+    // Add a new account
+    public static void addAccount(Account account) {
+        if (journal != null) {
+            journal.logCreate(account);
+        }
+        accounts.put(account);
+        if (searchIndex != null) {
+            searchIndex.add(account);
+        }
+    }
+
+    // Find an account by account number
+    public static Account findAccount(int accountNumber) {
+        long start = Metrics.startTimer(Metrics.Operation.FIND_ACCOUNT);
+        Account account = accounts.get(accountNumber);
+        Metrics.record(Metrics.Operation.FIND_ACCOUNT, account != null ? Metrics.Outcome.SUCCESS : Metrics.Outcome.NOT_FOUND, start);
+        return account;
+    }
+
+    // Close an account and return the balance paid out with it
+    public static long removeAccount(Account account) {
+        if (journal != null) {
+            journal.logClose(account.getAccountNumber());
+        }
+        long paidOut = account.close();
+        accounts.remove(account.getAccountNumber());
+        if (searchIndex != null) {
+            searchIndex.remove(account);
+        }
+        closedSinceSave.add(account.getAccountNumber());
+        authService.endSession(account.getAccountNumber());
+        return paidOut;
+    }
+
+class CreateAccountPanel extends JPanel {
+    private final BankingSystem parent;
+
+    public CreateAccountPanel(BankingSystem parent) {
+        this.parent = parent;
+        setLayout(new GridLayout(8, 2));
+
+        JTextField fNameField = new JTextField();
+        JTextField addressField = new JTextField();
+        JTextField bdayField = new JTextField();
+        JComboBox<String> genderComboBox = new JComboBox<>(new String[]{"Male", "Female"});
+        JComboBox<String> accTypeComboBox = new JComboBox<>(new String[]{"Savings", "Current"});
+        JTextField initialDepositField = new JTextField();
+        JPasswordField pinField = new JPasswordField();
+
+        add(new JLabel("Full Name:"));
+        add(fNameField);
+        add(new JLabel("Address:"));
+        add(addressField);
+        add(new JLabel("Birthday (DD/MM/YYYY):"));
+        add(bdayField);
+        add(new JLabel("Gender:"));
+        add(genderComboBox);
+        add(new JLabel("Account Type:"));
+        add(accTypeComboBox);
+        add(new JLabel("Initial Deposit:"));
+        add(initialDepositField);
+        add(new JLabel("Pin (6 digits):"));
+        add(pinField);
+
+        JButton createButton = new JButton("Create Account");
+        add(new JLabel());
+        add(createButton);
+
+        createButton.addActionListener(e -> {
+            String fName = fNameField.getText().trim();
+            String address = addressField.getText().trim();
+            String birthday = bdayField.getText().trim();
+            String gender = (String) genderComboBox.getSelectedItem();
+            String accountType = (String) accTypeComboBox.getSelectedItem();
+            String pin = pinField.getText().trim();
+
+            long initialDeposit; // In cents
+            try {
+                initialDeposit = Money.parse(initialDepositField.getText());
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(this, "Invalid initial deposit. Please enter a valid number.");
+                return;
+            }
+
+            String problem = BankingSystem.checkNewAccount(birthday, gender, accountType, initialDeposit, pin);
+            if (problem != null) {
+                JOptionPane.showMessageDialog(this, problem);
+                return;
+            }
+
+            // Proceed to create the account, hashing the PIN in the background
+            createButton.setEnabled(false);
+            authService.submit(() -> new Account(fName, address, birthday, gender, accountType, initialDeposit, pin))
+                    .whenComplete((account, error) -> SwingUtilities.invokeLater(() -> {
+                        createButton.setEnabled(true);
+                        if (error != null) {
+                            Throwable cause = error.getCause() != null ? error.getCause() : error;
+                            JOptionPane.showMessageDialog(this, "Could not create account: " + cause.getMessage());
+                            return;
+                        }
+                        BankingSystem.addAccount(account);
+                        JOptionPane.showMessageDialog(this, "Account created successfully! Account Number: " + account.getAccountNumber());
+
+                        parent.cardLayout.show(parent.cardPanel, "Main Menu");
+                    }));
+        });
+    }
+}
+
+    class BalanceInquiryPanel extends JPanel {
+        private final BankingSystem parent;
+
+        public BalanceInquiryPanel(BankingSystem parent) {
+            this.parent = parent;
+            setLayout(new FlowLayout());
+
+            JTextField accountNumberField = new JTextField(15);
+            JButton checkBalanceButton = new JButton("Check Balance");
+
+            add(new JLabel("Account Number:"));
+            add(accountNumberField);
+            add(checkBalanceButton);
+
+            checkBalanceButton.addActionListener(e -> {
+                try {
+                    int accountNumber = Integer.parseInt(accountNumberField.getText());
+                    Account account = BankingSystem.findAccount(accountNumber);
+                    if (account != null) {
+                        String pin = JOptionPane.showInputDialog(this, "Enter PIN for account access:");
+
+                        verifyPinAsync(this, checkBalanceButton, account, pin, valid -> {
+                            if (valid) {
+                                JOptionPane.showMessageDialog(this, "Balance: " + account.getBalance());
+                            } else {
+                                JOptionPane.showMessageDialog(this, "Invalid PIN!");
+                            }
+                            parent.cardLayout.show(parent.cardPanel, "Main Menu");
+                        });
+                        return;
+                    } else {
+                        JOptionPane.showMessageDialog(this, "Account not found!");
+                    }
+                } catch (NumberFormatException ex) {
+                    JOptionPane.showMessageDialog(this, "Invalid account number!");
+                }
+
+                parent.cardLayout.show(parent.cardPanel, "Main Menu");
+            });
+        }
+    }
+
+    class DepositPanel extends JPanel {
+        private final BankingSystem parent;
+
+        public DepositPanel(BankingSystem parent) {
+            this.parent = parent;
+            setLayout(new FlowLayout());
+
+            JTextField accountNumberField = new JTextField(10);
+            JTextField pinField = new JTextField(10);
+            JTextField depositAmountField = new JTextField(10);
+            JButton depositButton = new JButton("Deposit");
+
+            add(new JLabel("Account Number:"));
+            add(accountNumberField);
+            add(new JLabel("PIN:"));
+            add(pinField);
+            add(new JLabel("Deposit Amount:"));
+            add(depositAmountField);
+            add(depositButton);
+
+            depositButton.addActionListener(e -> {
+                int accountNumber;
+                long amount;
+                try {
+                    accountNumber = Integer.parseInt(accountNumberField.getText());
+                    amount = Money.parse(depositAmountField.getText());
+                } catch (NumberFormatException ex) {
+                    JOptionPane.showMessageDialog(this, "Invalid input!");
+                    return;
+                }
+                String pin = pinField.getText();
+                if (amount <= 0) {
+                    JOptionPane.showMessageDialog(this, "Amount must be positive!");
+                    return;
+                }
+
+                Account account = BankingSystem.findAccount(accountNumber);
+
+                if (account == null) {
+                    JOptionPane.showMessageDialog(this, "Invalid account number or PIN.");
+                    return;
+                }
+                parent.withPinAsync(this, depositButton, account, pin, target -> {
+                    try {
+                        target.deposit(amount);
+                        return "Deposit successful! New balance: " + target.getBalance();
+                    } catch (ArithmeticException ex) {
+                        return "Deposit too large for this account.";
+                    } catch (IllegalStateException ex) {
+                        return "This account has been closed.";
+                    }
+                }, message -> JOptionPane.showMessageDialog(this, message != null ? message : "Invalid account number or PIN."));
+            });
+        }
+    }
+
+    class WithdrawPanel extends JPanel {
+        private final BankingSystem parent;
+
+        public WithdrawPanel(BankingSystem parent) {
+            this.parent = parent;
+            setLayout(new FlowLayout());
+
+            JTextField accountNumberField = new JTextField(15);
+            JTextField amountField = new JTextField(10);
+            JButton withdrawButton = new JButton("Withdraw");
+
+            add(new JLabel("Account Number:"));
+            add(accountNumberField);
+            add(new JLabel("Amount:"));
+            add(amountField);
+            add(withdrawButton);
+
+            withdrawButton.addActionListener(e -> {
+                try {
+                    int accountNumber = Integer.parseInt(accountNumberField.getText());
+                    Account account = BankingSystem.findAccount(accountNumber);
+                    if (account != null) {
+                        String pin = JOptionPane.showInputDialog(this, "Enter PIN for account access:");
+
+                        long amount = Money.parse(amountField.getText());
+                        if (amount <= 0) {
+                            JOptionPane.showMessageDialog(this, "Amount must be positive!");
+                            return;
+                        }
+                        withPinAsync(this, withdrawButton, account, pin,
+                                target -> target.tryWithdraw(amount) ? "Withdrawn: " + Money.format(amount) : "Insufficient funds!",
+                                message -> {
+                                    JOptionPane.showMessageDialog(this, message != null ? message : "Invalid PIN!");
+                                    parent.cardLayout.show(parent.cardPanel, "Main Menu");
+                                });
+                        return;
+                    } else {
+                        JOptionPane.showMessageDialog(this, "Account not found!");
+                    }
+                } catch (NumberFormatException ex) {
+                    JOptionPane.showMessageDialog(this, "Invalid input!");
+                }
+
+                parent.cardLayout.show(parent.cardPanel, "Main Menu");
+            });
+        }
+    }
+
+    class TransferPanel extends JPanel {
+        private final BankingSystem parent;
+
+        public TransferPanel(BankingSystem parent) {
+            this.parent = parent;
+            setLayout(new FlowLayout());
+
+            JTextField fromAccountField = new JTextField(10);
+            JTextField toAccountField = new JTextField(10);
+            JTextField amountField = new JTextField(10);
+            JButton transferButton = new JButton("Transfer");
+
+            add(new JLabel("From Account:"));
+            add(fromAccountField);
+            add(new JLabel("To Account:"));
+            add(toAccountField);
+            add(new JLabel("Amount:"));
+            add(amountField);
+            add(transferButton);
+
+            transferButton.addActionListener(e -> {
+                try {
+                    Account from = BankingSystem.findAccount(Integer.parseInt(fromAccountField.getText()));
+                    Account to = BankingSystem.findAccount(Integer.parseInt(toAccountField.getText()));
+                    long amount = Money.parse(amountField.getText());
+                    if (from == null || to == null) {
+                        JOptionPane.showMessageDialog(this, "Account not found!");
+                    } else if (from == to) {
+                        JOptionPane.showMessageDialog(this, "Cannot transfer to the same account!");
+                    } else if (amount <= 0) {
+                        JOptionPane.showMessageDialog(this, "Amount must be positive!");
+                    } else {
+                        String pin = JOptionPane.showInputDialog(this, "Enter PIN for account " + from.getAccountNumber() + ":");
+
+                        withPinAsync(this, transferButton, from, pin, source -> {
+                            try {
+                                return Account.transfer(source, to, amount)
+                                        ? "Transferred " + Money.format(amount) + " to account " + to.getAccountNumber()
+                                        : "Insufficient funds!";
+                            } catch (ArithmeticException ex) {
+                                return "Transfer too large for account " + to.getAccountNumber() + ".";
+                            } catch (IllegalStateException ex) {
+                                return "Account " + to.getAccountNumber() + " has been closed.";
+                            }
+                        }, message -> {
+                            JOptionPane.showMessageDialog(this, message != null ? message : "Invalid PIN!");
+                            parent.cardLayout.show(parent.cardPanel, "Main Menu");
+                        });
+                        return;
+                    }
+                } catch (NumberFormatException ex) {
+                    JOptionPane.showMessageDialog(this, "Invalid input!");
+                }
+
+                parent.cardLayout.show(parent.cardPanel, "Main Menu");
+            });
+        }
+    }
+
+    class AccountInfoPanel extends JPanel {
+        private final BankingSystem parent;
+
+        public AccountInfoPanel(BankingSystem parent) {
+            this.parent = parent;
+            setLayout(new FlowLayout());
+
+            JTextField accountNumberField = new JTextField(15);
+            JButton showInfoButton = new JButton("Show Account Info");
+
+            add(new JLabel("Account Number:"));
+            add(accountNumberField);
+            add(showInfoButton);
+
+            showInfoButton.addActionListener(e -> {
+                try {
+                    int accountNumber = Integer.parseInt(accountNumberField.getText());
+                    Account account = BankingSystem.findAccount(accountNumber);
+                    if (account != null) {
+                        String pin = JOptionPane.showInputDialog(this, "Enter PIN for account access:");
+
+                        verifyPinAsync(this, showInfoButton, account, pin, valid -> {
+                            if (valid) {
+                                String info = "Account Number: " + account.getAccountNumber() + "\n"
+                                        + "Full Name: " + account.getFullName() + "\n"
+                                        + "Address: " + account.getAddress() + "\n"
+                                        + "Birthday: " + account.getBirthday() + "\n"
+                                        + "Gender: " + account.getGender() + "\n"
+                                        + "Account Type: " + account.getAccountType() + "\n"
+                                        + "Balance: " + account.getBalance();
+                                JOptionPane.showMessageDialog(this, info);
+                            } else {
+                                JOptionPane.showMessageDialog(this, "Invalid PIN!");
+                            }
+                            parent.cardLayout.show(parent.cardPanel, "Main Menu");
+                        });
+                        return;
+                    } else {
+                        JOptionPane.showMessageDialog(this, "Account not found!");
+                    }
+                } catch (NumberFormatException ex) {
+                    JOptionPane.showMessageDialog(this, "Invalid account number!");
+                }
+
+                parent.cardLayout.show(parent.cardPanel, "Main Menu");
+            });
+        }
+    }
+
+    class CloseAccountPanel extends JPanel {
+        private final BankingSystem parent;
+
+        public CloseAccountPanel(BankingSystem parent) {
+            this.parent = parent;
+            setLayout(new FlowLayout());
+
+            JTextField accountNumberField = new JTextField(15);
+            JButton closeAccountButton = new JButton("Close Account");
+
+            add(new JLabel("Account Number:"));
+            add(accountNumberField);
+            add(closeAccountButton);
+
+            closeAccountButton.addActionListener(e -> {
+                try {
+                    int accountNumber = Integer.parseInt(accountNumberField.getText());
+                    Account account = BankingSystem.findAccount(accountNumber);
+                    if (account != null) {
+                        String pin = JOptionPane.showInputDialog(this, "Enter PIN for account access:");
+
+                        withPinAsync(this, closeAccountButton, account, pin, target -> {
+                            if (BankingSystem.findAccount(accountNumber) != target) {
+                                return "Account not found!"; // Closed while the PIN was being checked
+                            }
+                            return "Account closed successfully! Paid out: " + Money.format(BankingSystem.removeAccount(target));
+                        }, message -> {
+                            JOptionPane.showMessageDialog(this, message != null ? message : "Invalid PIN!");
+                            parent.cardLayout.show(parent.cardPanel, "Main Menu");
+                        });
+                        return;
+                    } else {
+                        JOptionPane.showMessageDialog(this, "Account not found!");
+                    }
+                } catch (NumberFormatException ex) {
+                    JOptionPane.showMessageDialog(this, "Invalid account number!");
+                }
+
+                parent.cardLayout.show(parent.cardPanel, "Main Menu");
+            });
+        }
+    }
+
+    // Find customers by name or address when the teller doesn't know the account number
+    class SearchPanel extends JPanel {
+        private static final int PAGE_SIZE = 20;
+        private final BankingSystem parent;
+        private String query = "";
+        private int lastAccountNumber; // Last account shown, the next page starts after it
+
+        public SearchPanel(BankingSystem parent) {
+            this.parent = parent;
+            setLayout(new BorderLayout());
+
+            JTextField queryField = new JTextField(25);
+            JButton searchButton = new JButton("Search");
+            JButton nextPageButton = new JButton("Next Page");
+            JButton backButton = new JButton("Back");
+            JTextArea resultsArea = new JTextArea();
+            resultsArea.setEditable(false);
+            nextPageButton.setEnabled(false);
+
+            JPanel queryPanel = new JPanel(new FlowLayout());
+            queryPanel.add(new JLabel("Name or Address:"));
+            queryPanel.add(queryField);
+            queryPanel.add(searchButton);
+            JPanel buttonPanel = new JPanel(new FlowLayout());
+            buttonPanel.add(nextPageButton);
+            buttonPanel.add(backButton);
+            add(queryPanel, BorderLayout.NORTH);
+            add(new JScrollPane(resultsArea), BorderLayout.CENTER);
+            add(buttonPanel, BorderLayout.SOUTH);
+
+            searchButton.addActionListener(e -> {
+                query = queryField.getText();
+                lastAccountNumber = 0;
+                showPage(resultsArea, nextPageButton);
+            });
+            queryField.addActionListener(e -> searchButton.doClick());
+            nextPageButton.addActionListener(e -> showPage(resultsArea, nextPageButton));
+            backButton.addActionListener(e -> parent.cardLayout.show(parent.cardPanel, "Main Menu"));
+        }
+
+        private void showPage(JTextArea resultsArea, JButton nextPageButton) {
+            AccountSearchIndex.Page page = BankingSystem.searchAccounts(query, lastAccountNumber, PAGE_SIZE);
+            StringBuilder text = new StringBuilder();
+            for (Account account : page.getAccounts()) {
+                text.append(account.getAccountNumber()).append("  ").append(account.getFullName())
+                        .append("  ").append(account.getAddress()).append("\n");
+            }
+            if (page.getAccounts().isEmpty()) {
+                text.append(lastAccountNumber == 0 ? "No matching customers." : "No more matches.");
+            }
+            resultsArea.setText(text.toString());
+            resultsArea.setCaretPosition(0);
+            lastAccountNumber = page.getLastAccountNumber();
+            nextPageButton.setEnabled(page.hasMore());
+        }
+    }
+
+    // An account's deposits, withdrawals and transfers, optionally between two dates
+    class StatementPanel extends JPanel {
+        private static final int PAGE_SIZE = 20;
+        private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        private final BankingSystem parent;
+        private int accountNumber;
+        private long fromMillis;
+        private long toMillis;
+        private long lastSequence; // Last entry shown, the next page starts after it
+
+        public StatementPanel(BankingSystem parent) {
+            this.parent = parent;
+            setLayout(new BorderLayout());
+
+            JTextField accountNumberField = new JTextField(8);
+            JTextField fromField = new JTextField(8);
+            JTextField toField = new JTextField(8);
+            JButton showButton = new JButton("Show");
+            JButton nextPageButton = new JButton("Next Page");
+            JButton backButton = new JButton("Back");
+            JTextArea entriesArea = new JTextArea();
+            entriesArea.setEditable(false);
+            entriesArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            nextPageButton.setEnabled(false);
+
+            JPanel queryPanel = new JPanel(new FlowLayout());
+            queryPanel.add(new JLabel("Account Number:"));
+            queryPanel.add(accountNumberField);
+            queryPanel.add(new JLabel("From (YYYY-MM-DD):"));
+            queryPanel.add(fromField);
+            queryPanel.add(new JLabel("To:"));
+            queryPanel.add(toField);
+            queryPanel.add(showButton);
+            JPanel buttonPanel = new JPanel(new FlowLayout());
+            buttonPanel.add(nextPageButton);
+            buttonPanel.add(backButton);
+            add(queryPanel, BorderLayout.NORTH);
+            add(new JScrollPane(entriesArea), BorderLayout.CENTER);
+            add(buttonPanel, BorderLayout.SOUTH);
+
+            showButton.addActionListener(e -> {
+                Account account;
+                try {
+                    account = BankingSystem.findAccount(Integer.parseInt(accountNumberField.getText().trim()));
+                    // Blank dates leave that end open; the To date is included
+                    fromMillis = fromField.getText().isBlank() ? Long.MIN_VALUE : startOfDay(fromField.getText().trim());
+                    toMillis = toField.getText().isBlank() ? Long.MAX_VALUE : startOfDay(toField.getText().trim()) + 86_400_000L;
+                } catch (NumberFormatException | DateTimeParseException ex) {
+                    JOptionPane.showMessageDialog(this, "Invalid account number or date!");
+                    return;
+                }
+                if (account == null) {
+                    JOptionPane.showMessageDialog(this, "Account not found!");
+                    return;
+                }
+                String pin = JOptionPane.showInputDialog(this, "Enter PIN for account access:");
+
+                verifyPinAsync(this, showButton, account, pin, valid -> {
+                    if (!valid) {
+                        JOptionPane.showMessageDialog(this, "Invalid PIN!");
+                        return;
+                    }
+                    accountNumber = account.getAccountNumber();
+                    lastSequence = 0;
+                    showPage(entriesArea, nextPageButton);
+                });
+            });
+            nextPageButton.addActionListener(e -> showPage(entriesArea, nextPageButton));
+            backButton.addActionListener(e -> {
+                entriesArea.setText(""); // Don't leave the statement on screen for the next customer
+                nextPageButton.setEnabled(false);
+                parent.cardLayout.show(parent.cardPanel, "Main Menu");
+            });
+        }
+
+        private long startOfDay(String date) {
+            return LocalDate.parse(date).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+
+        private void showPage(JTextArea entriesArea, JButton nextPageButton) {
+            TransactionHistory.Page page = BankingSystem.statement(accountNumber, fromMillis, toMillis, lastSequence, PAGE_SIZE);
+            StringBuilder text = new StringBuilder();
+            for (TransactionHistory.Entry entry : page.getEntries()) {
+                text.append(TIME_FORMAT.format(Instant.ofEpochMilli(entry.getTimeMillis()).atZone(ZoneId.systemDefault())))
+                        .append(String.format("  %-12s %14s %14s%n", entry.getType(),
+                                (entry.getType().isDebit() ? "-" : "") + Money.format(entry.getAmount()), Money.format(entry.getBalanceAfter())));
+            }
+            if (page.getEntries().isEmpty()) {
+                text.append(lastSequence == 0 ? "No transactions." : "No more transactions.");
+            }
+            entriesArea.setText(text.toString());
+            entriesArea.setCaretPosition(0);
+            lastSequence = page.getLastSequence();
+            nextPageButton.setEnabled(page.hasMore());
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package bankingsystem;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Applies a CSV file of deposits and withdrawals (accountNumber,DEPOSIT|WITHDRAW,amount) without the GUI
+// Results have one line per record: line,accountNumber,type,amount,status,detail
+public class BatchProcessor {
+    private static final int QUEUE_SIZE = 1024;
+    private static final Transaction END = new Transaction(0, 0, null, 0); // Tells a worker to stop
+
+    private final AccountStore accounts;
+    private final int partitions;
+
+    private static final class Transaction {
+        final long line;
+        final int accountNumber;
+        final String type;
+        final long amount; // In cents
+
+        Transaction(long line, int accountNumber, String type, long amount) {
+            this.line = line;
+            this.accountNumber = accountNumber;
+            this.type = type;
+            this.amount = amount;
+        }
+    }
+
+    // Totals for one run
+    public static final class Summary {
+        public final long succeeded;
+        public final long failed;
+        public final long elapsedNanos;
+
+        Summary(long succeeded, long failed, long elapsedNanos) {
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public double recordsPerSecond() {
+            return (succeeded + failed) / Math.max(elapsedNanos / 1e9, 1e-9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Processed %d records (%d succeeded, %d failed) in %.3f s, %.0f records/s",
+                    succeeded + failed, succeeded, failed, elapsedNanos / 1e9, recordsPerSecond());
+        }
+    }
+
+    public BatchProcessor(AccountStore accounts, int partitions) {
+        this.accounts = accounts;
+        this.partitions = Math.max(1, partitions);
+    }
+
+    public Summary process(Path input, Path output) throws IOException {
+        long start = System.nanoTime();
+        AtomicLong succeeded = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            writer.write("line,accountNumber,type,amount,status,detail");
+            writer.newLine();
+
+            List<BlockingQueue<Transaction>> queues = new ArrayList<>(partitions);
+            Thread[] workers = new Thread[partitions];
+            IOException[] writeFailure = new IOException[1];
+            for (int i = 0; i < partitions; i++) {
+                BlockingQueue<Transaction> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+                queues.add(queue);
+                workers[i] = new Thread(() -> {
+                    try {
+                        // Keep draining even after an error so the reader never blocks on a full queue
+                        for (Transaction transaction = queue.take(); transaction != END; transaction = queue.take()) {
+                            String error;
+                            try {
+                                error = apply(transaction);
+                            } catch (RuntimeException e) {
+                                error = "Error: " + e.getMessage(); // e.g. the journal could not be written
+                            }
+                            (error == null ? succeeded : failed).incrementAndGet();
+                            // Only this worker touches the account, so the balance is the one right after this record
+                            String detail = error == null ? "balance " + Money.format(accounts.get(transaction.accountNumber).getBalanceCents()) : error;
+                            try {
+                                writeResult(writer, transaction, error == null, detail);
+                            } catch (IOException e) {
+                                synchronized (writeFailure) {
+                                    writeFailure[0] = e;
+                                }
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }, "batch-worker-" + i);
+                workers[i].start();
+            }
+
+            try {
+                String line;
+                long lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (line.isBlank() || (lineNumber == 1 && !Character.isDigit(line.trim().charAt(0)))) {
+                        continue; // Empty line or header
+                    }
+                    Transaction transaction = parse(lineNumber, line);
+                    if (transaction.type == null) {
+                        failed.incrementAndGet();
+                        writeResult(writer, transaction, false, "Unreadable record");
+                        continue;
+                    }
+                    queues.get(Math.floorMod(transaction.accountNumber, partitions)).put(transaction);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Batch interrupted", e);
+            } finally {
+                stopWorkers(queues, workers); // However reading ended, or they would wait on their queues forever
+            }
+
+            synchronized (writeFailure) {
+                if (writeFailure[0] != null) {
+                    throw writeFailure[0];
+                }
+            }
+        }
+        return new Summary(succeeded.get(), failed.get(), System.nanoTime() - start);
+    }
+
+    // Let the workers finish what is queued and wait for them, without interrupting a journal wait
+    private static void stopWorkers(List<BlockingQueue<Transaction>> queues, Thread[] workers) {
+        boolean interrupted = false;
+        for (BlockingQueue<Transaction> queue : queues) {
+            while (true) {
+                try {
+                    queue.put(END);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true; // Cleared by the throw, so the next try waits
+                }
+            }
+        }
+        for (Thread worker : workers) {
+            while (true) {
+                try {
+                    worker.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Same rules as the Deposit and Withdraw panels. Returns null on success, otherwise the reason it failed.
+    private String apply(Transaction transaction) {
+        Account account = accounts.get(transaction.accountNumber);
+        if (account == null) {
+            return "Account not found";
+        }
+        if (transaction.amount <= 0) {
+            return "Amount must be positive";
+        }
+        if (transaction.type.equals("DEPOSIT")) {
+            account.deposit(transaction.amount);
+        } else if (!account.tryWithdraw(transaction.amount)) {
+            return "Insufficient funds";
+        }
+        return null;
+    }
+
+    // A record with a null type could not be parsed
+    private static Transaction parse(long lineNumber, String line) {
+        String[] fields = line.split(",");
+        if (fields.length == 3) {
+            try {
+                int accountNumber = Integer.parseInt(fields[0].trim());
+                String type = fields[1].trim().toUpperCase();
+                long amount = Money.parse(fields[2]);
+                if (type.equals("DEPOSIT") || type.equals("WITHDRAW")) {
+                    return new Transaction(lineNumber, accountNumber, type, amount);
+                }
+            } catch (NumberFormatException e) {
+                // Fall through to the unreadable record below
+            }
+        }
+        return new Transaction(lineNumber, 0, null, 0);
+    }
+
+    private static void writeResult(BufferedWriter writer, Transaction transaction, boolean ok, String detail) throws IOException {
+        String record = transaction.type != null
+                ? transaction.line + "," + transaction.accountNumber + "," + transaction.type + "," + Money.format(transaction.amount)
+                : transaction.line + ",,,";
+        synchronized (writer) {
+            writer.write(record + "," + (ok ? "OK" : "FAILED") + "," + detail.replace(',', ';'));
+            writer.newLine();
+        }
+    }
+}
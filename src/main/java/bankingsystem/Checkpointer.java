@@ -0,0 +1,104 @@
+package bankingsystem;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Folds rotated journal segments into accounts.dat in the background, without stopping operations
+public class Checkpointer {
+    private final Path journalFile;
+    private final TransactionJournal journal;
+    private ScheduledExecutorService scheduler;
+
+    public Checkpointer(Path journalFile, TransactionJournal journal) {
+        this.journalFile = journalFile;
+        this.journal = journal;
+    }
+
+    // Run the given checkpoint task every intervalMillis on a background thread
+    public synchronized void start(Runnable task, long intervalMillis) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(task, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Stop scheduling, waiting for a checkpoint that is already running
+    public synchronized void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+    }
+
+    // Bring the account file up to now, returns its new generation
+    public long checkpoint(AccountFile accountFile) throws IOException {
+        return fold(journalFile, accountFile, journal.rotate());
+    }
+
+    // Fold the segments up to the rotated generation into the account file, returns its new generation
+    static long fold(Path journalFile, AccountFile accountFile, long rotated) throws IOException {
+        long snapshotGeneration = accountFile.getGeneration();
+        if (snapshotGeneration > rotated) {
+            throw new IOException("Account file is newer than the journal");
+        }
+        int[] touched = touchedAccounts(journalFile, snapshotGeneration, rotated);
+        AccountStore accounts = accountFile.loadAccounts(touched);
+        for (long generation = snapshotGeneration; generation <= rotated; generation++) {
+            long segmentGeneration = generation;
+            // Skip accounts whose slot was already saved past this segment
+            TransactionJournal.replay(TransactionJournal.segmentFile(journalFile, generation), generation, accounts,
+                    accountNumber -> accountFile.generationOf(accountNumber) > segmentGeneration);
+        }
+        ArrayList<Integer> closed = new ArrayList<>();
+        for (int accountNumber : touched) {
+            if (accounts.get(accountNumber) == null && accountFile.generationOf(accountNumber) >= 0) {
+                closed.add(accountNumber);
+            }
+        }
+        long newGeneration = rotated + 1;
+        accountFile.save(accounts.toList(), closed, newGeneration, accounts.getLastEndOfDay()); // Replay brought the day along
+        deleteSegments(journalFile, newGeneration);
+        return newGeneration;
+    }
+
+    // Account numbers named in the segments from..to, without duplicates
+    private static int[] touchedAccounts(Path journalFile, long from, long to) throws IOException {
+        int[] numbers = new int[0];
+        for (long generation = from; generation <= to; generation++) {
+            int[] segment = TransactionJournal.accountNumbers(TransactionJournal.segmentFile(journalFile, generation), generation);
+            int length = numbers.length;
+            numbers = Arrays.copyOf(numbers, length + segment.length);
+            System.arraycopy(segment, 0, numbers, length, segment.length);
+        }
+        return Arrays.stream(numbers).sorted().distinct().toArray();
+    }
+
+    // Delete segments older than the given generation, they are part of the snapshot
+    public static void deleteSegments(Path journalFile, long generation) throws IOException {
+        Path directory = journalFile.toAbsolutePath().getParent();
+        String prefix = journalFile.getFileName() + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(prefix.length());
+                if (suffix.matches("\\d{1,18}") && Long.parseLong(suffix) < generation) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+}
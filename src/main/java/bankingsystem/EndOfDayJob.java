@@ -0,0 +1,204 @@
+package bankingsystem;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+// End of day: interest on Savings accounts and a low-balance fee on Current accounts, journaled as one record
+public class EndOfDayJob {
+    private static final int BATCH_SIZE = 4096; // Accounts per fork/join task
+    private static final long PPM = 1_000_000;
+
+    private final long annualRatePpm; // Savings interest rate a year, in millionths
+    private final long minimumBalance; // In cents, for Current accounts
+    private final long fee; // In cents
+    private final TransactionJournal journal; // null when journaling is off
+    private final int threads;
+
+    // annualRatePercent is e.g. 0.25 for 0.25% a year; balance and fee are in cents
+    public EndOfDayJob(BigDecimal annualRatePercent, long minimumBalance, long fee, TransactionJournal journal, int threads) {
+        if (annualRatePercent.signum() < 0 || minimumBalance < 0 || fee < 0 || threads < 1) {
+            throw new IllegalArgumentException("Rate, minimum balance and fee can't be negative");
+        }
+        try {
+            this.annualRatePpm = annualRatePercent.movePointRight(4).setScale(0, RoundingMode.UNNECESSARY).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Interest rate can have at most 4 decimal places: " + annualRatePercent);
+        }
+        this.minimumBalance = minimumBalance;
+        this.fee = fee;
+        this.journal = journal;
+        this.threads = threads;
+    }
+
+    // What a run did
+    public static final class Result {
+        private final int accounts;
+        private final long interestCount;
+        private final long interestTotal;
+        private final long feeCount;
+        private final long feeTotal;
+        private final long nanos;
+
+        Result(int accounts, long interestCount, long interestTotal, long feeCount, long feeTotal, long nanos) {
+            this.accounts = accounts;
+            this.interestCount = interestCount;
+            this.interestTotal = interestTotal;
+            this.feeCount = feeCount;
+            this.feeTotal = feeTotal;
+            this.nanos = nanos;
+        }
+
+        public int getAccounts() {
+            return accounts;
+        }
+
+        public long getInterestCount() {
+            return interestCount;
+        }
+
+        // In cents
+        public long getInterestTotal() {
+            return interestTotal;
+        }
+
+        public long getFeeCount() {
+            return feeCount;
+        }
+
+        // In cents
+        public long getFeeTotal() {
+            return feeTotal;
+        }
+
+        public double getAccountsPerSecond() {
+            return nanos > 0 ? accounts * 1e9 / nanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d accounts in %.2f s (%.0f accounts/s): interest %s on %d Savings accounts, fees %s on %d Current accounts",
+                    accounts, nanos / 1e9, getAccountsPerSecond(), Money.format(interestTotal), interestCount, Money.format(feeTotal), feeCount);
+        }
+    }
+
+    // Run for the given day over every account in the store, on failure the fees are given back
+    public Result run(AccountStore accounts, LocalDate day) {
+        long start = System.nanoTime();
+        List<Account> all = accounts.toList();
+        long[] amounts = new long[all.size()]; // Positive for interest, negative for fees, 0 for neither
+        Totals totals = new Totals();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new Batch(all, amounts, 0, all.size(), false, totals));
+            log(all, amounts, day);
+            pool.invoke(new Batch(all, amounts, 0, all.size(), true, totals));
+        } finally {
+            pool.shutdown();
+        }
+        accounts.endOfDayDone(day);
+        return new Result(all.size(), totals.interestCount.sum(), totals.interestTotal.sum(),
+                totals.feeCount.sum(), totals.feeTotal.sum(), System.nanoTime() - start);
+    }
+
+    // A day's interest on a balance, in cents
+    long dailyInterest(long balance) {
+        if (balance <= 0 || annualRatePpm == 0) {
+            return 0;
+        }
+        if (balance <= Long.MAX_VALUE / annualRatePpm) {
+            return balance * annualRatePpm / (PPM * 365);
+        }
+        return BigDecimal.valueOf(balance).multiply(BigDecimal.valueOf(annualRatePpm))
+                .divide(BigDecimal.valueOf(PPM * 365), 0, RoundingMode.DOWN).longValueExact();
+    }
+
+    // One journal record for the whole run, even when nothing changed, so the day is recorded
+    private void log(List<Account> all, long[] amounts, LocalDate day) {
+        if (journal == null) {
+            return;
+        }
+        int count = 0;
+        for (long amount : amounts) {
+            if (amount != 0) {
+                count++;
+            }
+        }
+        int[] accountNumbers = new int[count];
+        long[] changes = new long[count];
+        for (int i = 0, j = 0; i < amounts.length; i++) {
+            if (amounts[i] != 0) {
+                accountNumbers[j] = all.get(i).getAccountNumber();
+                changes[j++] = amounts[i];
+            }
+        }
+        try {
+            journal.logEndOfDay(day, accountNumbers, changes, count);
+        } catch (RuntimeException e) {
+            for (int i = 0; i < amounts.length; i++) {
+                if (amounts[i] < 0) {
+                    all.get(i).refundFee(-amounts[i]); // Not durable, give the money back
+                }
+            }
+            throw e;
+        }
+    }
+
+    private static final class Totals {
+        final LongAdder interestCount = new LongAdder();
+        final LongAdder interestTotal = new LongAdder();
+        final LongAdder feeCount = new LongAdder();
+        final LongAdder feeTotal = new LongAdder();
+    }
+
+    // Takes the fees and fills in amounts, or once the run is journaled, pays the interest
+    private final class Batch extends RecursiveAction {
+        private final List<Account> accounts;
+        private final long[] amounts;
+        private final int from;
+        private final int to;
+        private final boolean journaled;
+        private final Totals totals;
+
+        Batch(List<Account> accounts, long[] amounts, int from, int to, boolean journaled, Totals totals) {
+            this.accounts = accounts;
+            this.amounts = amounts;
+            this.from = from;
+            this.to = to;
+            this.journaled = journaled;
+            this.totals = totals;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > BATCH_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Batch(accounts, amounts, from, middle, journaled, totals),
+                        new Batch(accounts, amounts, middle, to, journaled, totals));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                Account account = accounts.get(i);
+                if (!journaled) {
+                    if ("Savings".equals(account.getAccountType())) {
+                        amounts[i] = dailyInterest(account.getBalanceCents());
+                    } else if ("Current".equals(account.getAccountType()) && account.getBalanceCents() < minimumBalance) {
+                        amounts[i] = -account.takeFee(fee);
+                    }
+                } else if (amounts[i] > 0) {
+                    if (account.addInterest(amounts[i])) {
+                        totals.interestCount.increment();
+                        totals.interestTotal.add(amounts[i]);
+                    }
+                } else if (amounts[i] < 0) {
+                    totals.feeCount.increment();
+                    totals.feeTotal.add(-amounts[i]);
+                }
+            }
+        }
+    }
+}
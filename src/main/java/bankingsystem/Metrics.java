@@ -0,0 +1,129 @@
+package bankingsystem;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Counts and sampled latency histograms for each operation and outcome, published over JMX
+public final class Metrics {
+    public enum Operation {
+        FIND_ACCOUNT(true), VERIFY_PIN(true), DEPOSIT(true), WITHDRAW(true), TRANSFER(true), SAVE(false), CHECKPOINT(false), END_OF_DAY(false);
+
+        final boolean sampled;
+
+        Operation(boolean sampled) {
+            this.sampled = sampled;
+        }
+    }
+
+    public enum Outcome { SUCCESS, INVALID_PIN, INSUFFICIENT_FUNDS, NOT_FOUND, THROTTLED, ERROR }
+
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("banking.metrics", "true"));
+    private static final int SAMPLE_RATE = Math.max(1, Integer.getInteger("banking.metricsSampleRate", 8));
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+    private static final long DUMP_SECONDS = Long.getLong("banking.metricsDumpSeconds", 0);
+    private static final OperationStats[][] STATS = new OperationStats[Operation.values().length][Outcome.values().length];
+
+    static {
+        for (OperationStats[] outcomes : STATS) {
+            for (int i = 0; i < outcomes.length; i++) {
+                outcomes[i] = new OperationStats();
+            }
+        }
+    }
+
+    private static boolean registered;
+    private static final long[][] lastCounts = new long[STATS.length][Outcome.values().length]; // For rates in report()
+    private static long lastReportNanos = System.nanoTime();
+
+    private Metrics() {
+    }
+
+    // Start timing an operation if this call is in the sample, pass the result to record()
+    public static long startTimer(Operation operation) {
+        if (!ENABLED || operation.sampled && SAMPLE_RATE > 1 && ThreadLocalRandom.current().nextInt(SAMPLE_RATE) != 0) {
+            return NOT_TIMED;
+        }
+        return System.nanoTime();
+    }
+
+    public static void record(Operation operation, Outcome outcome, long startNanos) {
+        if (ENABLED) {
+            OperationStats stats = STATS[operation.ordinal()][outcome.ordinal()];
+            if (startNanos == NOT_TIMED) {
+                stats.count();
+            } else {
+                stats.record(System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    public static OperationStats stats(Operation operation, Outcome outcome) {
+        return STATS[operation.ordinal()][outcome.ordinal()];
+    }
+
+    // Publish the MBeans and start the periodic dump, once per process
+    public static synchronized void register() {
+        if (registered || !ENABLED) {
+            return;
+        }
+        registered = true;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (Operation operation : Operation.values()) {
+                for (Outcome outcome : Outcome.values()) {
+                    ObjectName name = new ObjectName("bankingsystem:type=Operations,operation=" + name(operation) + ",outcome=" + name(outcome));
+                    if (!server.isRegistered(name)) {
+                        server.registerMBean(stats(operation, outcome), name);
+                    }
+                }
+            }
+        } catch (JMException e) {
+            System.err.println("Could not publish metrics over JMX: " + e.getMessage()); // Recording still works
+        }
+        if (DUMP_SECONDS > 0) {
+            ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-dump");
+                thread.setDaemon(true);
+                return thread;
+            });
+            dumper.scheduleAtFixedRate(() -> System.out.print(report()), DUMP_SECONDS, DUMP_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    // One line per operation and outcome, latencies in microseconds
+    public static synchronized String report() {
+        long now = System.nanoTime();
+        double seconds = Math.max(now - lastReportNanos, 1) / 1e9;
+        lastReportNanos = now;
+        StringBuilder report = new StringBuilder(String.format(Locale.ROOT, "%-13s %-19s %10s %9s %9s %9s %9s %9s %9s%n",
+                "operation", "outcome", "count", "rate/s", "mean", "p50", "p99", "p99.9", "max"));
+        for (Operation operation : Operation.values()) {
+            for (Outcome outcome : Outcome.values()) {
+                OperationStats stats = stats(operation, outcome);
+                long count = stats.getCount();
+                long previous = lastCounts[operation.ordinal()][outcome.ordinal()];
+                lastCounts[operation.ordinal()][outcome.ordinal()] = count;
+                if (count == 0) {
+                    continue;
+                }
+                LatencyHistogram.Snapshot snapshot = stats.snapshot();
+                report.append(String.format(Locale.ROOT, "%-13s %-19s %10d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                        name(operation), name(outcome), count, Math.max(count - previous, 0) / seconds,
+                        snapshot.getMeanNanos() / 1000.0, snapshot.percentileNanos(0.50) / 1000.0, snapshot.percentileNanos(0.99) / 1000.0,
+                        snapshot.percentileNanos(0.999) / 1000.0, snapshot.getMaxNanos() / 1000.0));
+            }
+        }
+        return report.toString();
+    }
+
+    private static String name(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
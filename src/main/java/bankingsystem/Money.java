@@ -0,0 +1,99 @@
+package bankingsystem;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Amounts of money as a long number of centavos, overflow throws ArithmeticException
+public final class Money {
+    public static final int SCALE = 2; // Digits after the decimal point
+    private static final long UNIT = 100; // Cents per whole unit
+    private static final long MAX_WHOLE = (Long.MAX_VALUE - (UNIT - 1)) / UNIT; // Largest whole part that fits with any cents
+
+    private Money() {
+    }
+
+    // Parse an amount such as "1500.50" exactly
+    public static long parse(String text) {
+        String value = text.trim();
+        int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (i < length && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+            negative = value.charAt(i) == '-';
+            i++;
+        }
+        if (i == length) {
+            throw new NumberFormatException("Not an amount: \"" + text + "\"");
+        }
+
+        long whole = 0;
+        boolean digits = false;
+        for (; i < length && value.charAt(i) != '.'; i++) {
+            int digit = digit(value.charAt(i), text);
+            if (whole > (MAX_WHOLE - digit) / 10) {
+                throw new NumberFormatException("Amount too large: \"" + text + "\"");
+            }
+            whole = whole * 10 + digit;
+            digits = true;
+        }
+        long fraction = 0;
+        if (i < length) {
+            i++; // Skip the decimal point
+            int fractionDigits = length - i;
+            if (fractionDigits > SCALE) {
+                throw new NumberFormatException("Amounts can have at most " + SCALE + " decimal places: \"" + text + "\"");
+            }
+            for (; i < length; i++) {
+                fraction = fraction * 10 + digit(value.charAt(i), text);
+                digits = true;
+            }
+            for (int pad = fractionDigits; pad < SCALE; pad++) {
+                fraction *= 10;
+            }
+        }
+        if (!digits) {
+            throw new NumberFormatException("Not an amount: \"" + text + "\"");
+        }
+        long cents = whole * UNIT + fraction; // Cannot overflow, whole was bounded above
+        return negative ? -cents : cents;
+    }
+
+    // Format with exactly two decimals, e.g. 150050 -> "1500.50"
+    public static String format(long cents) {
+        StringBuilder text = new StringBuilder(24);
+        if (cents < 0) {
+            text.append('-');
+        }
+        long whole = Math.abs(cents / UNIT);
+        long fraction = Math.abs(cents % UNIT);
+        text.append(whole).append('.');
+        if (fraction < 10) {
+            text.append('0');
+        }
+        return text.append(fraction).toString();
+    }
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    public static BigDecimal toBigDecimal(long cents) {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    // Values from older files may carry more decimals (they came from doubles); those are rounded
+    public static long fromBigDecimal(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    private static int digit(char c, String text) {
+        if (c < '0' || c > '9') {
+            throw new NumberFormatException("Not an amount: \"" + text + "\"");
+        }
+        return c - '0';
+    }
+}
@@ -0,0 +1,63 @@
+package bankingsystem;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Count and latency of one operation with one outcome, published over JMX by Metrics
+public class OperationStats implements OperationStatsMBean {
+    private final LongAdder count = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    void count() {
+        count.increment();
+    }
+
+    void record(long nanos) {
+        count.increment();
+        latency.record(nanos);
+    }
+
+    public LatencyHistogram.Snapshot snapshot() {
+        return latency.snapshot();
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latency.snapshot().getMeanNanos() / 1000.0;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return latency.snapshot().percentileNanos(0.50) / 1000.0;
+    }
+
+    @Override
+    public double getP90Micros() {
+        return latency.snapshot().percentileNanos(0.90) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return latency.snapshot().percentileNanos(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return latency.snapshot().percentileNanos(0.999) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return latency.snapshot().getMaxNanos() / 1000.0;
+    }
+
+    @Override
+    public void reset() {
+        count.reset();
+        latency.reset();
+    }
+}
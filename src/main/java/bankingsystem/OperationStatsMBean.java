@@ -0,0 +1,20 @@
+package bankingsystem;
+
+// JMX view of one operation and outcome, latencies in microseconds
+public interface OperationStatsMBean {
+    long getCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP90Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    void reset();
+}
@@ -0,0 +1,57 @@
+package bankingsystem;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+// The one place PINs are hashed (PBKDF2 with HMAC-SHA256)
+public final class PinHasher {
+    public static final int SALT_LENGTH = 16; // Bytes
+    public static final int HASH_LENGTH = 32; // Bytes
+    private static final int ITERATIONS = 10000;
+    private static final int KEY_LENGTH = HASH_LENGTH * 8; // Bits
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<SecretKeyFactory> FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 is not available", e);
+        }
+    });
+
+    private PinHasher() {
+    }
+
+    public static byte[] newSalt() {
+        byte[] salt = new byte[SALT_LENGTH];
+        RANDOM.nextBytes(salt);
+        return salt;
+    }
+
+    public static byte[] hash(String pin, byte[] salt) {
+        char[] pinChars = pin.toCharArray();
+        PBEKeySpec spec = new PBEKeySpec(pinChars, salt, ITERATIONS, KEY_LENGTH);
+        try {
+            return FACTORY.get().generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Error hashing PIN", e);
+        } finally {
+            spec.clearPassword();
+            Arrays.fill(pinChars, '\0');
+        }
+    }
+
+    // True if the PIN hashes to the expected value; takes the same time wherever the bytes differ
+    public static boolean verify(String pin, byte[] salt, byte[] expectedHash) {
+        return MessageDigest.isEqual(hash(pin, salt), expectedHash);
+    }
+
+    // Same, with the salt and the expected hash one after the other in one array
+    public static boolean verify(String pin, byte[] saltAndHash) {
+        return verify(pin, Arrays.copyOf(saltAndHash, SALT_LENGTH), Arrays.copyOfRange(saltAndHash, SALT_LENGTH, SALT_LENGTH + HASH_LENGTH));
+    }
+}
@@ -0,0 +1,150 @@
+package bankingsystem;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Limits wrong PINs per account and per caller with token buckets, so guesses can't starve the tellers of CPU
+public class PinThrottle {
+    private final long intervalNanos; // Time to earn back one attempt
+    private final long toleranceNanos; // How far ahead of now a bucket may run: burst - 1 intervals
+    private final long callerIntervalNanos;
+    private final long callerToleranceNanos;
+    private final int callerInFlight; // Checks one caller may have running at once
+    private final int maxEntries; // Per table
+    private final Map<Integer, AtomicLong> accounts = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> callers = new ConcurrentHashMap<>();
+    private final Map<String, Integer> running = new ConcurrentHashMap<>(); // Checks in flight per caller, none when absent
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    // burst wrong PINs, then one every refillMillis (0 means no limit); a caller may have callerBurst checks in flight
+    public PinThrottle(int burst, long refillMillis, int callerBurst, long callerRefillMillis, int maxEntries) {
+        this(burst, refillMillis, callerBurst, callerRefillMillis, callerBurst, maxEntries);
+    }
+
+    public PinThrottle(int burst, long refillMillis, int callerBurst, long callerRefillMillis, int callerInFlight, int maxEntries) {
+        if (burst < 1 || callerBurst < 1 || callerInFlight < 1 || refillMillis < 0 || callerRefillMillis < 0 || maxEntries < 1) {
+            throw new IllegalArgumentException("Bursts, checks in flight and table size must be positive, refill times can't be negative");
+        }
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(refillMillis);
+        this.toleranceNanos = (burst - 1) * intervalNanos;
+        this.callerIntervalNanos = TimeUnit.MILLISECONDS.toNanos(callerRefillMillis);
+        this.callerToleranceNanos = (callerBurst - 1) * callerIntervalNanos;
+        this.callerInFlight = callerInFlight;
+        this.maxEntries = maxEntries;
+    }
+
+    // Limits from the banking.pinAttempts, banking.pinRefillSeconds and banking.callerPin* properties
+    public PinThrottle() {
+        this(Integer.getInteger("banking.pinAttempts", 5), Long.getLong("banking.pinRefillSeconds", 30) * 1000,
+                Integer.getInteger("banking.callerPinAttempts", 20), Long.getLong("banking.callerPinRefillSeconds", 1) * 1000,
+                Integer.getInteger("banking.callerPinInFlight", 20), Integer.getInteger("banking.pinThrottleEntries", 100_000));
+    }
+
+    // Returns 0 if the PIN may be checked, then release() must follow; otherwise milliseconds to wait
+    public long tryAcquire(int accountNumber, String caller) {
+        long now = System.nanoTime();
+        long wait = waitFor(accounts, accountNumber, intervalNanos, toleranceNanos, now);
+        if (wait != 0 || caller == null) {
+            return toMillis(wait);
+        }
+        wait = waitFor(callers, caller, callerIntervalNanos, callerToleranceNanos, now);
+        if (wait != 0) {
+            return toMillis(wait);
+        }
+        return tryAcquire(caller);
+    }
+
+    // Count other hashing for the caller as in flight, returns as tryAcquire above
+    public long tryAcquire(String caller) {
+        boolean[] admitted = new boolean[1];
+        running.compute(caller, (key, count) -> {
+            if (count == null || count < callerInFlight) {
+                admitted[0] = true;
+                return count == null ? 1 : count + 1;
+            }
+            return count;
+        });
+        return admitted[0] ? 0 : toMillis(Math.max(callerIntervalNanos, 1)); // Too many at once, not a wrong PIN
+    }
+
+    // End a check that tryAcquire allowed, a wrong PIN takes an attempt from the account and the caller
+    public void release(int accountNumber, String caller, boolean wrongPin) {
+        long now = System.nanoTime();
+        if (wrongPin) {
+            take(accounts, accountNumber, intervalNanos, now);
+        }
+        if (caller != null) {
+            if (wrongPin) {
+                take(callers, caller, callerIntervalNanos, now);
+            }
+            release(caller);
+        }
+    }
+
+    public void release(String caller) {
+        running.computeIfPresent(caller, (key, count) -> count == 1 ? null : count - 1);
+    }
+
+    // Accounts and callers remembered, for tests and monitoring
+    public int size() {
+        return accounts.size() + callers.size();
+    }
+
+    // Returns 0 if the bucket has a token, otherwise nanoseconds until it will
+    private <K> long waitFor(Map<K, AtomicLong> table, K key, long interval, long tolerance, long now) {
+        AtomicLong bucket = table.get(key);
+        if (bucket == null) {
+            return table.size() >= maxEntries && !sweep(table, now) ? Math.max(interval, 1) : 0; // Table full of recent offenders
+        }
+        long full = bucket.get();
+        long start = full - now > 0 ? full : now;
+        return start - now > tolerance ? start - now - tolerance : 0;
+    }
+
+    // Take a token for a wrong PIN, an empty bucket goes further into debt
+    private <K> void take(Map<K, AtomicLong> table, K key, long interval, long now) {
+        while (true) {
+            AtomicLong bucket = table.get(key);
+            if (bucket == null) {
+                if (table.size() >= maxEntries && !sweep(table, now)) {
+                    return; // Table full of recent offenders, new keys are refused by waitFor() anyway
+                }
+                bucket = table.computeIfAbsent(key, k -> new AtomicLong(now));
+            }
+            long full = bucket.get();
+            long start = full - now > 0 ? full : now;
+            if (!bucket.compareAndSet(full, start + interval)) {
+                continue;
+            }
+            if (table.get(key) == bucket) {
+                return;
+            }
+            // A sweep dropped the bucket as full just before the token was taken, take it from the new one
+        }
+    }
+
+    // Drop full buckets, one thread at a time; true if that made room
+    private <K> boolean sweep(Map<K, AtomicLong> table, long now) {
+        if (sweeping.compareAndSet(false, true)) {
+            try {
+                Iterator<Map.Entry<K, AtomicLong>> entries = table.entrySet().iterator();
+                while (entries.hasNext()) {
+                    if (entries.next().getValue().get() - now <= 0) {
+                        entries.remove();
+                    }
+                }
+            } finally {
+                sweeping.set(false);
+            }
+        }
+        return table.size() < maxEntries;
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos == 0 ? 0 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(nanos + 999_999));
+    }
+}
@@ -0,0 +1,65 @@
+package bankingsystem;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Least recently used cache of the profiles of accounts loaded without them (banking.lazyProfiles)
+final class ProfileCache {
+    private final AccountFile file;
+    private final Map<Integer, Profile> profiles; // Guarded by itself
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    // The cold fields of one account
+    static final class Profile {
+        final String fullName;
+        final String address;
+        final String birthday;
+        final String gender;
+
+        Profile(String fullName, String address, String birthday, String gender) {
+            this.fullName = fullName;
+            this.address = address;
+            this.birthday = birthday;
+            this.gender = gender;
+        }
+    }
+
+    ProfileCache(AccountFile file, int capacity) {
+        this.file = file;
+        this.profiles = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Profile> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    Profile get(int accountNumber) {
+        Profile profile;
+        synchronized (profiles) {
+            profile = profiles.get(accountNumber);
+        }
+        if (profile != null) {
+            hits.increment();
+            return profile;
+        }
+        misses.increment();
+        profile = file.readProfile(accountNumber); // Outside the lock, a save can hold the file for a while
+        if (profile == null) {
+            throw new IllegalStateException("Account " + accountNumber + " is no longer in accounts.dat");
+        }
+        synchronized (profiles) {
+            profiles.put(accountNumber, profile);
+        }
+        return profile;
+    }
+
+    @Override
+    public String toString() {
+        synchronized (profiles) {
+            return String.format("%d profiles cached, %d hits, %d misses", profiles.size(), hits.sum(), misses.sum());
+        }
+    }
+}
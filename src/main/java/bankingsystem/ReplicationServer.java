@@ -0,0 +1,343 @@
+package bankingsystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Primary side of replication: ships accounts.dat and then the journal to standbys as it is written
+// Protocol: HELLO and ACK from the standby, SNAPSHOT, RECORDS and NEXT_FILE from the primary
+public class ReplicationServer implements Closeable {
+    static final byte SNAPSHOT = 1;
+    static final byte RECORDS = 2;
+    static final byte NEXT_FILE = 3;
+    private static final int CHUNK_SIZE = 256 * 1024; // Most journal bytes in one RECORDS message
+    private static final long POLL_MILLIS = 1000; // How often an idle sender looks for a closed connection
+    private static final int MAX_TRACKED_BATCHES = 100_000; // Batches remembered for the lag histogram
+
+    private final ServerSocket serverSocket;
+    private final TransactionJournal journal;
+    private final Path journalFile;
+    private final Path accountsFile;
+    private final Object fileLock; // Held by whatever writes accounts.dat or deletes journal segments
+    private final boolean synchronous;
+    private final long timeoutMillis;
+    private final Thread acceptor;
+    private final AtomicInteger connectionNumber = new AtomicInteger();
+    private final LatencyHistogram lag = new LatencyHistogram(); // From fsync on the primary to the standby's acknowledgement
+    private volatile boolean running = true;
+
+    // Guarded by "this"
+    private int connected; // Standbys that said HELLO
+    private long ackedGeneration; // Furthest position any standby has acknowledged
+    private long ackedOffset;
+    private boolean lagging; // Gave up waiting for a standby, asynchronous until one catches up
+    private final ArrayDeque<long[]> unacknowledged = new ArrayDeque<>(); // generation, end offset, fsync time of each batch
+
+    // Listen for standbys on address, nothing is shipped until setReplication() is called
+    public ReplicationServer(InetSocketAddress address, TransactionJournal journal, Path journalFile, Path accountsFile,
+            Object fileLock, boolean synchronous, long timeoutMillis) throws IOException {
+        this.journal = journal;
+        this.journalFile = journalFile;
+        this.accountsFile = accountsFile;
+        this.fileLock = fileLock;
+        this.synchronous = synchronous;
+        this.timeoutMillis = timeoutMillis;
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(address);
+        this.acceptor = new Thread(this::acceptLoop, "replication-acceptor");
+        acceptor.setDaemon(true);
+    }
+
+    // Start shipping the journal and accepting standbys
+    public void start() {
+        journal.setReplication(this);
+        acceptor.start();
+    }
+
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+    }
+
+    public synchronized int getConnectedStandbys() {
+        return connected;
+    }
+
+    // Time from a batch being fsynced here to a standby acknowledging it
+    public LatencyHistogram.Snapshot getLag() {
+        return lag.snapshot();
+    }
+
+    @Override
+    public String toString() {
+        LatencyHistogram.Snapshot snapshot = lag.snapshot();
+        synchronized (this) {
+            return String.format("%d standby(s) connected, %s, acknowledged generation %d offset %d, lag p50 %.2f ms p99 %.2f ms max %.2f ms",
+                    connected, synchronous ? lagging ? "synchronous (standby lagging, not waiting)" : "synchronous" : "asynchronous",
+                    ackedGeneration, ackedOffset, snapshot.percentileNanos(0.5) / 1e6, snapshot.percentileNanos(0.99) / 1e6,
+                    snapshot.getMaxNanos() / 1e6);
+        }
+    }
+
+    // Called by the journal flusher after each fsync, waits for a standby only when synchronous
+    void awaitAcknowledged(long generation, long end) {
+        synchronized (this) {
+            if (connected == 0) {
+                return;
+            }
+            if (unacknowledged.size() == MAX_TRACKED_BATCHES) {
+                unacknowledged.poll();
+            }
+            unacknowledged.add(new long[] {generation, end, System.nanoTime()});
+            if (!synchronous || lagging) {
+                return;
+            }
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (connected > 0 && !isAcknowledged(generation, end)) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    lagging = true;
+                    System.err.println("Standby hasn't acknowledged in " + timeoutMillis + " ms, replicating asynchronously until it catches up");
+                    return;
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private synchronized void acknowledged(long generation, long offset) {
+        if (!isAcknowledged(generation, offset)) {
+            ackedGeneration = generation;
+            ackedOffset = offset;
+        }
+        long now = System.nanoTime();
+        while (!unacknowledged.isEmpty() && isAcknowledged(unacknowledged.peek()[0], unacknowledged.peek()[1])) {
+            lag.record(now - unacknowledged.poll()[2]);
+        }
+        if (lagging && unacknowledged.isEmpty()) {
+            lagging = false;
+            System.err.println("Standby caught up, replicating synchronously again");
+        }
+        notifyAll();
+    }
+
+    // True if a standby has everything up to offset in the file of the given generation
+    private boolean isAcknowledged(long generation, long offset) {
+        return ackedGeneration > generation || ackedGeneration == generation && ackedOffset >= offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Could not accept a standby: " + e.getMessage());
+                }
+                continue;
+            }
+            Thread sender = new Thread(() -> serve(socket), "replication-sender-" + connectionNumber.incrementAndGet());
+            sender.setDaemon(true);
+            sender.start();
+        }
+    }
+
+    // Send one standby everything it is missing, then keep it up to date until it goes away
+    private void serve(Socket socket) {
+        FileChannel file = null;
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+            long generation = in.readLong();
+            long offset = in.readLong();
+            synchronized (this) {
+                connected++; // Until the ack reader stops
+            }
+            startAckReader(in, socket);
+
+            file = generation > 0 && generation >= journal.getResetGeneration() ? openGeneration(generation) : null;
+            if (file == null || offset < TransactionJournal.HEADER_SIZE || offset > file.size()) {
+                closeQuietly(file);
+                file = sendSnapshot(out);
+                generation = TransactionJournal.readGeneration(file);
+                offset = TransactionJournal.HEADER_SIZE;
+            }
+            byte[] chunk = new byte[CHUNK_SIZE];
+            while (running && !socket.isClosed()) {
+                long end = journal.awaitWritten(generation, offset, POLL_MILLIS);
+                if (end < 0) {
+                    end = file.size(); // Rotated, the segment is complete
+                }
+                if (offset < end && sendRecords(out, file, generation, offset, end, chunk)) {
+                    offset = end;
+                    out.flush();
+                }
+                if (journal.getResetGeneration() > generation) {
+                    // The file was thrown away by a save, possibly while it was being read
+                    closeQuietly(file);
+                    file = sendSnapshot(out);
+                    generation = TransactionJournal.readGeneration(file);
+                    offset = TransactionJournal.HEADER_SIZE;
+                } else if (journal.getGeneration() > generation && offset == file.size()) {
+                    // Rotated, and the file is complete once rotated: all of it sent, not just up to end
+                    FileChannel next = openGeneration(generation + 1);
+                    closeQuietly(file);
+                    if (next != null) {
+                        file = next;
+                        generation++;
+                        offset = TransactionJournal.HEADER_SIZE;
+                        out.writeByte(NEXT_FILE);
+                        out.writeLong(generation);
+                        out.flush();
+                    } else {
+                        file = sendSnapshot(out); // Fell so far behind that the next file is already folded
+                        generation = TransactionJournal.readGeneration(file);
+                        offset = TransactionJournal.HEADER_SIZE;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Standby went away, it reconnects and says where it got to
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeQuietly(file);
+        }
+    }
+
+    // Read the standby's acknowledgements until the connection ends, then count it as gone
+    private void startAckReader(DataInputStream in, Socket socket) {
+        Thread reader = new Thread(() -> {
+            try {
+                while (true) {
+                    long generation = in.readLong();
+                    long offset = in.readLong();
+                    acknowledged(generation, offset);
+                }
+            } catch (IOException e) {
+                closeQuietly(socket); // Stops the sender too
+            } finally {
+                synchronized (this) {
+                    connected--;
+                    notifyAll(); // Synchronous waits stop waiting for it
+                }
+            }
+        }, Thread.currentThread().getName() + "-acks");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    // Send accounts.dat and return the journal file of its generation, opened before it can be folded
+    private FileChannel sendSnapshot(DataOutputStream out) throws IOException {
+        synchronized (fileLock) {
+            long generation = AccountFile.readGeneration(accountsFile);
+            FileChannel file = openGeneration(generation);
+            if (file == null) {
+                throw new IOException("Journal of generation " + generation + " is missing");
+            }
+            try {
+                out.writeByte(SNAPSHOT);
+                out.writeLong(generation);
+                out.writeLong(Files.size(accountsFile));
+                Files.copy(accountsFile, out);
+                out.flush();
+            } catch (IOException e) {
+                file.close();
+                throw e;
+            }
+            return file;
+        }
+    }
+
+    // Send the records from..to of the file, false if a save threw the file away first
+    private boolean sendRecords(DataOutputStream out, FileChannel file, long generation, long from, long to, byte[] chunk) throws IOException {
+        long sent = System.currentTimeMillis();
+        for (long position = from; position < to; ) {
+            int length = (int) Math.min(chunk.length, to - position);
+            ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, length);
+            while (buffer.hasRemaining()) {
+                if (file.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Journal of generation " + generation + " ended early");
+                }
+            }
+            if (journal.getResetGeneration() > generation) {
+                return false; // What was read may already belong to the next generation
+            }
+            out.writeByte(RECORDS);
+            out.writeLong(generation);
+            out.writeLong(position);
+            out.writeLong(sent);
+            out.writeInt(length);
+            out.write(chunk, 0, length);
+            position += length;
+        }
+        return true;
+    }
+
+    // The journal file of the given generation, a segment or the live journal, or null if it is gone
+    private FileChannel openGeneration(long generation) throws IOException {
+        Path segment = TransactionJournal.segmentFile(journalFile, generation);
+        FileChannel file = open(segment, generation);
+        if (file == null) {
+            file = open(journalFile, generation);
+        }
+        if (file == null) {
+            file = open(segment, generation); // Rotated between the two looks
+        }
+        return file;
+    }
+
+    private static FileChannel open(Path path, long generation) throws IOException {
+        FileChannel file;
+        try {
+            file = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (TransactionJournal.readGeneration(file) != generation) {
+            file.close();
+            return null;
+        }
+        return file;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Nothing left to do with it
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package bankingsystem;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+// Remembers accounts whose PIN was verified recently, as an HMAC token that expires
+public class SessionCache {
+    private final long ttlMillis;
+    private final int maxSessions;
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> mac;
+    private final LinkedHashMap<Integer, Session> sessions; // Guarded by "this", in access order
+
+    private static final class Session {
+        final byte[] token;
+        final long expiresAt;
+
+        Session(byte[] token, long expiresAt) {
+            this.token = token;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public SessionCache(long ttlMillis, int maxSessions) {
+        this.ttlMillis = ttlMillis;
+        this.maxSessions = maxSessions;
+        byte[] keyBytes = new byte[32];
+        new SecureRandom().nextBytes(keyBytes);
+        this.key = new SecretKeySpec(keyBytes, "HmacSHA256");
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance("HmacSHA256");
+                instance.init(key);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 is not available", e);
+            }
+        });
+        this.sessions = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Session> eldest) {
+                return size() > SessionCache.this.maxSessions;
+            }
+        };
+    }
+
+    // True if the account has a live session opened with this PIN
+    public boolean isValid(int accountNumber, String pin) {
+        Session session;
+        synchronized (this) {
+            session = sessions.get(accountNumber);
+            if (session == null) {
+                return false;
+            }
+            if (session.expiresAt <= System.currentTimeMillis()) {
+                sessions.remove(accountNumber);
+                return false;
+            }
+        }
+        return MessageDigest.isEqual(token(accountNumber, pin), session.token);
+    }
+
+    // Start (or restart) a session after the PIN was verified the slow way
+    public void open(int accountNumber, String pin) {
+        Session session = new Session(token(accountNumber, pin), System.currentTimeMillis() + ttlMillis);
+        synchronized (this) {
+            sessions.put(accountNumber, session);
+        }
+    }
+
+    // End the session, e.g. when the account is closed
+    public synchronized void invalidate(int accountNumber) {
+        sessions.remove(accountNumber);
+    }
+
+    private byte[] token(int accountNumber, String pin) {
+        Mac instance = mac.get();
+        instance.update(ByteBuffer.allocate(4).putInt(accountNumber).array());
+        return instance.doFinal(pin.getBytes(StandardCharsets.UTF_8));
+    }
+}
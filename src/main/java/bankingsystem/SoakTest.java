@@ -0,0 +1,387 @@
+package bankingsystem;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Load and soak test without the GUI: simulated tellers run the panels' operations and money must be conserved
+public class SoakTest {
+    static final String PIN = "123456"; // Every account the test creates has it
+    private static final String[] FIRST_NAMES = {"Juan", "Maria", "Jose", "Ana", "Pedro", "Rosa", "Carlos", "Elena"};
+    private static final String[] SURNAMES = {"Dela Cruz", "Santos", "Reyes", "Garcia", "Mendoza", "Bautista"};
+    private static final String[] STREETS = {"Rizal Street", "Mabini Avenue", "Bonifacio Drive", "Luna Road"};
+
+    public enum Operation { CREATE, BALANCE, DEPOSIT, WITHDRAW, CLOSE }
+
+    // REFUSED is a PIN check turned away, REJECTED a PIN that didn't match
+    public enum Outcome { OK, INSUFFICIENT_FUNDS, NOT_FOUND, REFUSED, REJECTED, ERROR }
+
+    private final AccountStore accounts;
+    private final AuthService authService;
+    private final int tellers;
+    private final int[] mix; // Cumulative weights by Operation ordinal
+    private final ZipfSampler popularity;
+    private final int startingAccounts;
+    private final Population population = new Population();
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+    private final AtomicLongArray outcomes = new AtomicLongArray(Operation.values().length * Outcome.values().length);
+    private final LongAdder moneyIn = new LongAdder(); // Opening deposits and deposits, in cents
+    private final LongAdder moneyOut = new LongAdder(); // Withdrawals and balances of closed accounts
+
+    // mix gives each operation's share (see parseMix), zipfExponent the popularity skew
+    public SoakTest(AccountStore accounts, AuthService authService, int tellers, Map<Operation, Integer> mix,
+                    double zipfExponent, int startingAccounts) {
+        if (tellers < 1 || startingAccounts < 1 || zipfExponent < 0) {
+            throw new IllegalArgumentException("Need at least one teller and one account, and a skew of 0 or more");
+        }
+        this.accounts = accounts;
+        this.authService = authService;
+        this.tellers = tellers;
+        this.mix = new int[Operation.values().length];
+        int total = 0;
+        for (Operation operation : Operation.values()) {
+            total += mix.getOrDefault(operation, 0);
+            this.mix[operation.ordinal()] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("The operation mix is empty");
+        }
+        this.popularity = new ZipfSampler(zipfExponent);
+        this.startingAccounts = startingAccounts;
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    // Operation shares like "balance=40,deposit=25,withdraw=25,create=5,close=5"
+    public static Map<Operation, Integer> parseMix(String text) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String part : text.split(",")) {
+            String[] pair = part.split("=");
+            int share;
+            try {
+                share = pair.length == 2 ? Integer.parseInt(pair[1].trim()) : -1;
+            } catch (NumberFormatException e) {
+                share = -1;
+            }
+            if (share < 0) {
+                throw new IllegalArgumentException("Operation mix entries look like deposit=25, not " + part);
+            }
+            mix.put(Operation.valueOf(pair[0].trim().toUpperCase()), share); // Throws for an unknown operation
+        }
+        return mix;
+    }
+
+    // Create the starting accounts, then run the tellers for duration
+    public Result run(Duration duration, long reportMillis, Consumer<String> progress) throws InterruptedException {
+        long total = 0;
+        for (Account account : accounts.toList()) {
+            total += account.getBalanceCents();
+        }
+        long startingTotal = total;
+        SplittableRandom random = new SplittableRandom();
+        for (int i = 0; i < startingAccounts; i++) {
+            if (create(random) != Outcome.OK) {
+                throw new IllegalStateException("Could not create the starting accounts");
+            }
+        }
+        Arrays.stream(latencies).forEach(LatencyHistogram::reset); // Creating them isn't part of the run
+        for (int i = 0; i < outcomes.length(); i++) {
+            outcomes.set(i, 0);
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < tellers; i++) {
+            Thread thread = new Thread(() -> teller(deadline), "teller-" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        long lastReport = start;
+        long lastCount = 0;
+        long remaining;
+        while ((remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())) > 0) {
+            Thread.sleep(reportMillis > 0 ? Math.min(remaining, reportMillis) : remaining);
+            long now = System.nanoTime();
+            if (reportMillis > 0 && now - lastReport >= TimeUnit.MILLISECONDS.toNanos(reportMillis)) {
+                long count = operationCount();
+                progress.accept(String.format("%6.0f s: %.0f operations/s, %d accounts", (now - start) / 1e9,
+                        (count - lastCount) / ((now - lastReport) / 1e9), population.size()));
+                lastReport = now;
+                lastCount = count;
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        long expected = startingTotal + moneyIn.sum() - moneyOut.sum();
+        long actual = 0;
+        int negative = 0;
+        for (Account account : accounts.toList()) {
+            actual += account.getBalanceCents();
+            if (account.getBalanceCents() < 0) {
+                negative++;
+            }
+        }
+        return new Result(elapsedNanos, snapshots(), outcomeCounts(), expected, actual, negative);
+    }
+
+    private void teller(long deadline) {
+        SplittableRandom random = new SplittableRandom();
+        while (System.nanoTime() < deadline) {
+            int pick = random.nextInt(mix[mix.length - 1]);
+            Operation operation = Operation.CREATE;
+            while (pick >= mix[operation.ordinal()]) {
+                operation = Operation.values()[operation.ordinal() + 1];
+            }
+            long start = System.nanoTime();
+            Outcome outcome;
+            try {
+                outcome = operation == Operation.CREATE ? create(random) : onAccount(operation, random);
+            } catch (RuntimeException e) {
+                outcome = Outcome.ERROR; // A journal failure, as a teller would see it
+            }
+            latencies[operation.ordinal()].record(System.nanoTime() - start);
+            outcomes.getAndIncrement(operation.ordinal() * Outcome.values().length + outcome.ordinal());
+        }
+    }
+
+    // What CreateAccountPanel does: check the rules, hash the PIN on the hashing pool, add it
+    private Outcome create(SplittableRandom random) {
+        String fullName = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + SURNAMES[random.nextInt(SURNAMES.length)];
+        String address = (1 + random.nextInt(2000)) + " " + STREETS[random.nextInt(STREETS.length)] + ", Manila";
+        String gender = random.nextBoolean() ? "Male" : "Female";
+        boolean savings = random.nextBoolean();
+        String accountType = savings ? "Savings" : "Current";
+        long initialDeposit = (savings ? 5000_00 : 10000_00) + random.nextLong(100000_00);
+        if (BankingSystem.checkNewAccount("01/01/1990", gender, accountType, initialDeposit, PIN) != null) {
+            return Outcome.ERROR;
+        }
+        Account account = authService.submit(() -> new Account(fullName, address, "01/01/1990", gender, accountType, initialDeposit, PIN)).join();
+        BankingSystem.addAccount(account);
+        moneyIn.add(initialDeposit);
+        population.add(account.getAccountNumber());
+        return Outcome.OK;
+    }
+
+    // Find the account, check the PIN, then act on it, as the panels do
+    private Outcome onAccount(Operation operation, SplittableRandom random) {
+        int size = population.size();
+        if (size == 0) {
+            return Outcome.NOT_FOUND; // All closed, until a create
+        }
+        int accountNumber = population.get(popularity.sample(random, size) - 1);
+        Account account = BankingSystem.findAccount(accountNumber);
+        if (account == null) {
+            return Outcome.NOT_FOUND; // Closed since it was picked
+        }
+        try {
+            if (!authService.verifyPin(account, PIN).join()) {
+                return Outcome.REJECTED;
+            }
+        } catch (CompletionException e) {
+            return e.getCause() instanceof RejectedExecutionException ? Outcome.REFUSED : Outcome.ERROR;
+        }
+        if (operation == Operation.BALANCE) {
+            account.getBalance();
+            return Outcome.OK;
+        }
+        if (BankingSystem.findAccount(accountNumber) != account) {
+            return Outcome.NOT_FOUND; // Closed while the PIN was checked, as the server checks
+        }
+        long amount = 1 + random.nextLong(1000_00);
+        switch (operation) {
+            case DEPOSIT:
+                try {
+                    account.deposit(amount);
+                } catch (IllegalStateException e) {
+                    return Outcome.NOT_FOUND; // Closed by another teller since
+                }
+                moneyIn.add(amount);
+                return Outcome.OK;
+            case WITHDRAW:
+                if (!account.tryWithdraw(amount)) {
+                    return account.isClosed() ? Outcome.NOT_FOUND : Outcome.INSUFFICIENT_FUNDS;
+                }
+                moneyOut.add(amount);
+                return Outcome.OK;
+            default:
+                population.remove(accountNumber);
+                moneyOut.add(BankingSystem.removeAccount(account)); // 0 if another teller closed it first
+                return Outcome.OK;
+        }
+    }
+
+    private long operationCount() {
+        long count = 0;
+        for (LatencyHistogram histogram : latencies) {
+            count += histogram.snapshot().getCount();
+        }
+        return count;
+    }
+
+    private Map<Operation, LatencyHistogram.Snapshot> snapshots() {
+        Map<Operation, LatencyHistogram.Snapshot> snapshots = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            snapshots.put(operation, latencies[operation.ordinal()].snapshot());
+        }
+        return snapshots;
+    }
+
+    private Map<Operation, long[]> outcomeCounts() {
+        Map<Operation, long[]> counts = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            long[] byOutcome = new long[Outcome.values().length];
+            for (Outcome outcome : Outcome.values()) {
+                byOutcome[outcome.ordinal()] = outcomes.get(operation.ordinal() * Outcome.values().length + outcome.ordinal());
+            }
+            counts.put(operation, byOutcome);
+        }
+        return counts;
+    }
+
+    // Totals for one run
+    public static final class Result {
+        public final long elapsedNanos;
+        public final Map<Operation, LatencyHistogram.Snapshot> latencies;
+        public final Map<Operation, long[]> outcomes; // Counts by Outcome ordinal
+        public final long expectedTotal; // Cents the accounts should hold
+        public final long actualTotal;
+        public final int negativeBalances;
+
+        Result(long elapsedNanos, Map<Operation, LatencyHistogram.Snapshot> latencies, Map<Operation, long[]> outcomes,
+               long expectedTotal, long actualTotal, int negativeBalances) {
+            this.elapsedNanos = elapsedNanos;
+            this.latencies = latencies;
+            this.outcomes = outcomes;
+            this.expectedTotal = expectedTotal;
+            this.actualTotal = actualTotal;
+            this.negativeBalances = negativeBalances;
+        }
+
+        public boolean isConsistent() {
+            return expectedTotal == actualTotal && negativeBalances == 0;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(String.format("%-9s %10s %10s %10s %10s %10s %10s %10s %10s %10s%n",
+                    "", "ops/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "not ok", "refused", "wrong PIN", "errors"));
+            long count = 0;
+            for (Operation operation : Operation.values()) {
+                LatencyHistogram.Snapshot snapshot = latencies.get(operation);
+                long[] byOutcome = outcomes.get(operation);
+                count += snapshot.getCount();
+                text.append(String.format("%-9s %10.1f %10.2f %10.2f %10.2f %10.2f %10d %10d %10d %10d%n", operation,
+                        snapshot.getCount() / (elapsedNanos / 1e9), snapshot.percentileNanos(0.5) / 1e6,
+                        snapshot.percentileNanos(0.99) / 1e6, snapshot.percentileNanos(0.999) / 1e6, snapshot.getMaxNanos() / 1e6,
+                        byOutcome[Outcome.INSUFFICIENT_FUNDS.ordinal()] + byOutcome[Outcome.NOT_FOUND.ordinal()],
+                        byOutcome[Outcome.REFUSED.ordinal()], byOutcome[Outcome.REJECTED.ordinal()], byOutcome[Outcome.ERROR.ordinal()]));
+            }
+            text.append(String.format("%d operations in %.0f s, %.1f/s%n", count, elapsedNanos / 1e9, count / (elapsedNanos / 1e9)));
+            text.append(expectedTotal == actualTotal
+                    ? "Money conserved: " + Money.format(actualTotal)
+                    : "MONEY NOT CONSERVED: accounts hold " + Money.format(actualTotal) + ", expected " + Money.format(expectedTotal));
+            if (negativeBalances > 0) {
+                text.append(String.format("%nNEGATIVE BALANCES: %d accounts", negativeBalances));
+            }
+            return text.toString();
+        }
+    }
+
+    // Account numbers the test created and hasn't closed, a position is a popularity rank
+    private static final class Population {
+        private int[] numbers = new int[1024];
+        private int size;
+
+        synchronized void add(int accountNumber) {
+            if (size == numbers.length) {
+                numbers = Arrays.copyOf(numbers, size * 2);
+            }
+            numbers[size++] = accountNumber;
+        }
+
+        synchronized int get(int index) {
+            return numbers[Math.min(index, size - 1)]; // May have shrunk since size() was read
+        }
+
+        synchronized void remove(int accountNumber) {
+            for (int i = 0; i < size; i++) {
+                if (numbers[i] == accountNumber) {
+                    numbers[i] = numbers[--size];
+                    return;
+                }
+            }
+        }
+
+        synchronized int size() {
+            return size;
+        }
+    }
+
+    // Ranks 1..n with probability proportional to 1/k^exponent (rejection-inversion)
+    static final class ZipfSampler {
+        private final double exponent;
+        private final double hIntegralX1;
+        private final double s;
+
+        ZipfSampler(double exponent) {
+            this.exponent = exponent;
+            this.hIntegralX1 = hIntegral(1.5) - 1;
+            this.s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+        }
+
+        int sample(SplittableRandom random, int n) {
+            if (exponent == 0 || n == 1) {
+                return 1 + random.nextInt(n);
+            }
+            double hIntegralN = hIntegral(n + 0.5);
+            while (true) {
+                double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+                double x = hIntegralInverse(u);
+                int k = (int) Math.max(1, Math.min(n, Math.round(x)));
+                if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+                    return k;
+                }
+            }
+        }
+
+        private double h(double x) {
+            return Math.exp(-exponent * Math.log(x));
+        }
+
+        // Integral of h, shifted so it is continuous at exponent 1
+        private double hIntegral(double x) {
+            double logX = Math.log(x);
+            return expm1OverX((1 - exponent) * logX) * logX;
+        }
+
+        private double hIntegralInverse(double x) {
+            double t = Math.max(x * (1 - exponent), -1); // Rounding can take it just past -1
+            return Math.exp(log1pOverX(t) * x);
+        }
+
+        private static double expm1OverX(double x) {
+            return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1 + x / 2 * (1 + x / 3 * (1 + x / 4));
+        }
+
+        private static double log1pOverX(double x) {
+            return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package bankingsystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Standby side of replication: keeps a copy of a primary's files and applies its journal as it comes in
+public class Standby implements Closeable {
+    private static final long RETRY_MILLIS = 1000;
+    private static final long ACK_MILLIS = 10; // Acknowledge at least this often while records keep coming
+    private static final int ACK_BYTES = 1024 * 1024; // ... or after this many bytes
+
+    private final InetSocketAddress primary;
+    private final Path accountsPath;
+    private final Path journalPath;
+    private final Object fileLock = new Object(); // Held while accounts.dat is replaced or folded into
+    private final ExecutorService folder;
+    private final Thread receiver;
+    private volatile boolean running = true;
+    private volatile Socket socket;
+
+    // Written by the receiver thread only
+    private volatile AccountStore accounts = new AccountStore();
+    private AccountFile accountFile; // Replaced under fileLock
+    private FileChannel journal; // Current journal file
+    private volatile long generation; // Position: the journal generation and offset in its file
+    private volatile long offset;
+    private volatile long lagMillis; // Between the primary sending the last records and them being applied here
+    private volatile boolean connected;
+
+    // Keep the files in directory, recovering what is already there
+    public Standby(InetSocketAddress primary, Path directory) throws IOException {
+        this.primary = primary;
+        this.accountsPath = directory.resolve("accounts.dat");
+        this.journalPath = directory.resolve("accounts.journal");
+        recover();
+        this.folder = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "standby-checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.receiver = new Thread(this::receiveLoop, "standby-receiver");
+        receiver.setDaemon(true);
+    }
+
+    public void start() {
+        receiver.start();
+    }
+
+    // The standby's own accounts; replaced when the primary sends accounts.dat again
+    public AccountStore getAccounts() {
+        return accounts;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    // Time from the primary sending the latest records to them being applied here
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Standby of %s: %s, at generation %d offset %d, %d accounts, lag %d ms",
+                primary, connected ? "connected" : "not connected", generation, offset, accounts.size(), lagMillis);
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        Socket current = socket;
+        if (current != null) {
+            current.close();
+        }
+        try {
+            receiver.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        folder.shutdown();
+        try {
+            folder.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (fileLock) {
+            if (journal != null) {
+                journal.close();
+            }
+            if (accountFile != null) {
+                accountFile.close();
+            }
+        }
+    }
+
+    // Load what an earlier run left, the same way startup does on the primary
+    private void recover() throws IOException {
+        if (!Files.exists(accountsPath)) {
+            return; // Nothing yet, the primary sends accounts.dat first
+        }
+        accountFile = AccountFile.open(accountsPath);
+        AccountStore loaded = accountFile.loadAccounts();
+        long snapshotGeneration = accountFile.getGeneration();
+        Checkpointer.deleteSegments(journalPath, snapshotGeneration);
+        long replayed = snapshotGeneration;
+        while (Files.exists(TransactionJournal.segmentFile(journalPath, replayed))) {
+            replay(TransactionJournal.segmentFile(journalPath, replayed), replayed, loaded);
+            replayed++;
+        }
+        replay(journalPath, replayed, loaded);
+        accounts = loaded;
+        openJournal(replayed);
+    }
+
+    private void replay(Path file, long fileGeneration, AccountStore into) throws IOException {
+        AccountFile snapshot = accountFile;
+        TransactionJournal.replay(file, fileGeneration, into, accountNumber -> snapshot.generationOf(accountNumber) > fileGeneration);
+    }
+
+    // Continue the journal file of the given generation, or start it
+    private void openJournal(long journalGeneration) throws IOException {
+        FileChannel file = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (TransactionJournal.readGeneration(file) != journalGeneration) {
+            file.truncate(0);
+            TransactionJournal.writeHeader(file, journalGeneration);
+        }
+        journal = file;
+        generation = journalGeneration;
+        offset = file.size();
+    }
+
+    private void receiveLoop() {
+        while (running) {
+            try (Socket connection = new Socket()) {
+                socket = connection;
+                connection.connect(primary);
+                connection.setTcpNoDelay(true);
+                connected = true;
+                receive(new DataInputStream(new BufferedInputStream(connection.getInputStream(), 64 * 1024)),
+                        new DataOutputStream(new BufferedOutputStream(connection.getOutputStream())));
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println((connected ? "Lost the primary" : "Can't reach the primary") + ", retrying: " + e.getMessage());
+                }
+            } finally {
+                connected = false;
+            }
+            if (running) {
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void receive(DataInputStream in, DataOutputStream out) throws IOException {
+        out.writeLong(journal != null ? generation : 0);
+        out.writeLong(journal != null ? offset : 0);
+        out.flush();
+        long lastAck = System.nanoTime();
+        long unacknowledged = 0;
+        byte[] records = new byte[64 * 1024];
+        int carried = 0; // Start of a record cut off at the end of the last message
+        while (running) {
+            byte type = in.readByte();
+            switch (type) {
+                case ReplicationServer.SNAPSHOT:
+                    receiveSnapshot(in, in.readLong(), in.readLong());
+                    carried = 0;
+                    break;
+                case ReplicationServer.RECORDS: {
+                    long recordsGeneration = in.readLong();
+                    long recordsOffset = in.readLong();
+                    long sentMillis = in.readLong();
+                    int length = in.readInt();
+                    if (journal == null || recordsGeneration != generation || recordsOffset != offset) {
+                        throw new IOException("Records for generation " + recordsGeneration + " offset " + recordsOffset
+                                + " don't follow generation " + generation + " offset " + offset);
+                    }
+                    if (records.length < carried + length) {
+                        records = Arrays.copyOf(records, carried + length);
+                    }
+                    in.readFully(records, carried, length);
+                    carried = applyRecords(records, carried, length);
+                    unacknowledged += length;
+                    lagMillis = Math.max(0, System.currentTimeMillis() - sentMillis);
+                    break;
+                }
+                case ReplicationServer.NEXT_FILE:
+                    if (carried > 0) {
+                        throw new IOException("Journal of generation " + generation + " ends part way into a record");
+                    }
+                    nextFile(in.readLong());
+                    break;
+                default:
+                    throw new IOException("Unknown replication message " + type);
+            }
+            // Acknowledge once the primary has paused, or regularly if it never does
+            if (in.available() == 0 || unacknowledged >= ACK_BYTES || System.nanoTime() - lastAck > TimeUnit.MILLISECONDS.toNanos(ACK_MILLIS)) {
+                journal.force(false);
+                out.writeLong(generation);
+                out.writeLong(offset);
+                out.flush();
+                lastAck = System.nanoTime();
+                unacknowledged = 0;
+            }
+        }
+    }
+
+    // Write the new bytes to the journal and apply the whole records, returns how many bytes are left
+    private int applyRecords(byte[] records, int carried, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(records, carried, length);
+        while (buffer.hasRemaining()) {
+            journal.write(buffer, offset + buffer.position() - carried);
+        }
+        long recordsGeneration = generation;
+        AccountFile snapshot = accountFile;
+        // Like replay, skip accounts whose slot in accounts.dat already includes this generation
+        int end = TransactionJournal.apply(ByteBuffer.wrap(records, 0, carried + length), accounts,
+                accountNumber -> snapshot.generationOf(accountNumber) > recordsGeneration);
+        offset += length;
+        int left = carried + length - end;
+        System.arraycopy(records, end, records, 0, left);
+        return left;
+    }
+
+    // The primary sent accounts.dat: replace everything with it
+    private void receiveSnapshot(DataInputStream in, long snapshotGeneration, long length) throws IOException {
+        Path temp = accountsPath.resolveSibling(accountsPath.getFileName() + ".tmp");
+        try (OutputStream file = Files.newOutputStream(temp)) {
+            byte[] buffer = new byte[64 * 1024];
+            for (long remaining = length; remaining > 0; ) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IOException("Primary went away while sending accounts.dat");
+                }
+                file.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+        try (FileChannel file = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            file.force(true);
+        }
+        synchronized (fileLock) {
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+            if (accountFile != null) {
+                accountFile.close();
+                accountFile = null;
+            }
+            Files.move(temp, accountsPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Files.deleteIfExists(journalPath);
+            Checkpointer.deleteSegments(journalPath, Long.MAX_VALUE);
+            accountFile = AccountFile.open(accountsPath);
+            accounts = accountFile.loadAccounts();
+            openJournal(snapshotGeneration);
+        }
+    }
+
+    // The current journal file is complete: keep it as a segment, fold it and carry on in a new file
+    private void nextFile(long nextGeneration) throws IOException {
+        if (journal == null || nextGeneration != generation + 1) {
+            throw new IOException("Journal generation " + nextGeneration + " doesn't follow " + generation);
+        }
+        long finished = generation;
+        journal.force(false);
+        journal.close();
+        journal = null;
+        Files.move(journalPath, TransactionJournal.segmentFile(journalPath, finished), StandardCopyOption.ATOMIC_MOVE);
+        openJournal(nextGeneration);
+        folder.execute(() -> {
+            synchronized (fileLock) {
+                if (accountFile == null || accountFile.getGeneration() > finished) {
+                    return; // Replaced by a new accounts.dat meanwhile
+                }
+                try {
+                    Checkpointer.fold(journalPath, accountFile, finished);
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Standby checkpoint failed, will retry with the next segment: " + e.getMessage());
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,437 @@
+package bankingsystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+// Every deposit, withdrawal, transfer, interest payment and fee, stored as striped columns for statements
+public class TransactionHistory {
+    private static final int STRIPE_BITS = 5; // 32 stripes
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final int CHUNK_BITS = 12; // 4096 entries, about 116 KB, per chunk
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_CAPACITY = 64; // Accounts per stripe, must be a power of two
+    private static final float LOAD_FACTOR = 0.5f;
+    private static final int FIRST_LIST_SIZE = 4; // Entries per account before the first resize
+    private static final long ARRAY_HEADER_BYTES = 16;
+
+    public enum Type {
+        DEPOSIT, WITHDRAWAL, TRANSFER_IN, TRANSFER_OUT,
+        REVERSAL, // A withdrawal or fee given back because it couldn't be journaled
+        INTEREST, FEE; // From the end-of-day job
+
+        // True if money left the account
+        public boolean isDebit() {
+            return this == WITHDRAWAL || this == TRANSFER_OUT || this == FEE;
+        }
+    }
+
+    private static final Type[] TYPES = Type.values();
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    // Keeps at least maxEntries, rounded up so every stripe has a power of two of whole chunks
+    public TransactionHistory(long maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The history must keep at least one entry");
+        }
+        long perStripe = (maxEntries + STRIPES * (long) CHUNK_SIZE - 1) / (STRIPES * (long) CHUNK_SIZE);
+        if (perStripe > 1 << (30 - CHUNK_BITS)) {
+            throw new IllegalArgumentException("Too many history entries: " + maxEntries);
+        }
+        int chunks = Integer.highestOneBit((int) perStripe);
+        chunks = chunks < perStripe ? chunks * 2 : chunks;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(chunks);
+        }
+    }
+
+    // The last banking.historyEntries (default 4 million, about 150 MB when full) entries
+    public TransactionHistory() {
+        this(Long.getLong("banking.historyEntries", 4_000_000));
+    }
+
+    // One line of a statement
+    public static final class Entry {
+        private final long sequence;
+        private final long timeMillis;
+        private final Type type;
+        private final long amount;
+        private final long balanceAfter;
+
+        Entry(long sequence, long timeMillis, Type type, long amount, long balanceAfter) {
+            this.sequence = sequence;
+            this.timeMillis = timeMillis;
+            this.type = type;
+            this.amount = amount;
+            this.balanceAfter = balanceAfter;
+        }
+
+        // Increases with every entry recorded for the account
+        public long getSequence() {
+            return sequence;
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        // In cents, always positive; the type says which way it went
+        public long getAmount() {
+            return amount;
+        }
+
+        // In cents
+        public long getBalanceAfter() {
+            return balanceAfter;
+        }
+    }
+
+    // One page of a statement, oldest entry first
+    public static final class Page {
+        private final List<Entry> entries;
+        private final boolean hasMore;
+
+        Page(List<Entry> entries, boolean hasMore) {
+            this.entries = entries;
+            this.hasMore = hasMore;
+        }
+
+        public List<Entry> getEntries() {
+            return entries;
+        }
+
+        public boolean hasMore() {
+            return hasMore;
+        }
+
+        // Pass to statement() to get the next page
+        public long getLastSequence() {
+            return entries.isEmpty() ? Long.MAX_VALUE : entries.get(entries.size() - 1).getSequence();
+        }
+    }
+
+    // Record a change to an account in cents, the caller holds the account's lock
+    public void record(int accountNumber, Type type, long amount, long balanceAfter) {
+        record(accountNumber, type, amount, balanceAfter, System.currentTimeMillis());
+    }
+
+    void record(int accountNumber, Type type, long amount, long balanceAfter, long timeMillis) {
+        Stripe stripe = stripe(accountNumber);
+        long stamp = stripe.lock.writeLock();
+        try {
+            stripe.add(accountNumber, type, amount, balanceAfter, timeMillis);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    // Up to limit entries of the account from fromMillis to toMillis after afterSequence, oldest first
+    public Page statement(int accountNumber, long fromMillis, long toMillis, long afterSequence, int limit) {
+        if (limit <= 0) {
+            return new Page(Collections.emptyList(), false);
+        }
+        Stripe stripe = stripe(accountNumber);
+        long stamp = stripe.lock.readLock();
+        try {
+            return stripe.statement(accountNumber, fromMillis, toMillis, afterSequence, limit);
+        } finally {
+            stripe.lock.unlockRead(stamp);
+        }
+    }
+
+    // Entries kept
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                size += stripe.next - stripe.first;
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    // Heap taken by the history: the columns and the per-account lists, counting unused capacity
+    public long bytesUsed() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                bytes += stripe.bytesUsed();
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return bytes;
+    }
+
+    private Stripe stripe(int accountNumber) {
+        return stripes[accountNumber * 0x85EBCA6B >>> (32 - STRIPE_BITS)]; // Another multiplier than hash(), so each stripe's table still spreads
+    }
+
+    // One stripe's columns and account lists, guarded by its lock
+    private static final class Stripe {
+        final StampedLock lock = new StampedLock();
+        // The ring of chunks: position p is in chunk (p >>> CHUNK_BITS) & ringMask, allocated when first reached
+        final long[][] times;
+        final byte[][] types;
+        final long[][] amounts;
+        final long[][] balances;
+        final int[][] owners; // Account of each entry, to take dropped entries off their lists
+        final int ringMask;
+        long first; // Position of the oldest entry kept
+        long next; // Position the next entry goes to
+        long lastTime;
+        // Per account, the positions of its entries from starts[slot] to counts[slot]
+        int[] keys = new int[INITIAL_CAPACITY];
+        int[][] lists = new int[INITIAL_CAPACITY][]; // null marks a free slot
+        int[] starts = new int[INITIAL_CAPACITY];
+        int[] counts = new int[INITIAL_CAPACITY];
+        int accountCount;
+
+        Stripe(int chunks) {
+            times = new long[chunks][];
+            types = new byte[chunks][];
+            amounts = new long[chunks][];
+            balances = new long[chunks][];
+            owners = new int[chunks][];
+            ringMask = chunks - 1;
+        }
+
+        void add(int accountNumber, Type type, long amount, long balanceAfter, long timeMillis) {
+            if (next - first == (long) times.length * CHUNK_SIZE) {
+                dropOldestChunk();
+            }
+            lastTime = Math.max(lastTime, timeMillis); // The clock can be set back, statements must stay sorted
+            int position = (int) next;
+            int chunk = chunk(position);
+            if (times[chunk] == null) {
+                times[chunk] = new long[CHUNK_SIZE];
+                types[chunk] = new byte[CHUNK_SIZE];
+                amounts[chunk] = new long[CHUNK_SIZE];
+                balances[chunk] = new long[CHUNK_SIZE];
+                owners[chunk] = new int[CHUNK_SIZE];
+            }
+            int at = position & CHUNK_MASK;
+            times[chunk][at] = lastTime;
+            types[chunk][at] = (byte) type.ordinal();
+            amounts[chunk][at] = amount;
+            balances[chunk][at] = balanceAfter;
+            owners[chunk][at] = accountNumber;
+            next++;
+            addToAccount(accountNumber, position);
+        }
+
+        // Dropping a chunk moves the start of each list it touches along by one per entry
+        private void dropOldestChunk() {
+            int[] dropped = owners[chunk((int) first)];
+            for (int accountNumber : dropped) {
+                int slot = indexOf(accountNumber);
+                if (++starts[slot] == counts[slot]) {
+                    deleteSlot(slot);
+                    accountCount--;
+                }
+            }
+            first += CHUNK_SIZE;
+        }
+
+        Page statement(int accountNumber, long fromMillis, long toMillis, long afterSequence, int limit) {
+            int slot = indexOf(accountNumber);
+            if (slot < 0) {
+                return new Page(Collections.emptyList(), false);
+            }
+            int[] positions = lists[slot];
+            int count = counts[slot];
+            // Sequences are positions plus one, so positions >= afterSequence come after it
+            int start = Math.max(firstAtOrAfterTime(positions, starts[slot], count, fromMillis),
+                    firstAtOrAfterPosition(positions, starts[slot], count, afterSequence));
+            List<Entry> entries = new ArrayList<>(Math.min(limit, 64));
+            for (int i = start; i < count; i++) {
+                int position = positions[i];
+                if (times[chunk(position)][position & CHUNK_MASK] >= toMillis) {
+                    break;
+                }
+                if (entries.size() == limit) {
+                    return new Page(entries, true);
+                }
+                entries.add(entry(position));
+            }
+            return new Page(entries, false);
+        }
+
+        long bytesUsed() {
+            long bytes = 0;
+            for (long[] column : times) {
+                if (column != null) {
+                    bytes += 5 * ARRAY_HEADER_BYTES + (long) CHUNK_SIZE * (8 + 1 + 8 + 8 + 4);
+                }
+            }
+            bytes += keys.length * (4L + 4 + 4 + 4);
+            for (int[] list : lists) {
+                if (list != null) {
+                    bytes += ARRAY_HEADER_BYTES + 4L * list.length;
+                }
+            }
+            return bytes;
+        }
+
+        private int chunk(int position) {
+            return (position >>> CHUNK_BITS) & ringMask;
+        }
+
+        // How far a kept position is from the oldest one
+        private int offset(int position) {
+            return position - (int) first;
+        }
+
+        private Entry entry(int position) {
+            int chunk = chunk(position);
+            int at = position & CHUNK_MASK;
+            return new Entry(first + offset(position) + 1, times[chunk][at], TYPES[types[chunk][at]], amounts[chunk][at], balances[chunk][at]);
+        }
+
+        // Index of the account's first entry at or after timeMillis
+        private int firstAtOrAfterTime(int[] positions, int from, int count, long timeMillis) {
+            int low = from;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int position = positions[mid];
+                if (times[chunk(position)][position & CHUNK_MASK] < timeMillis) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // Index of the account's first entry at or after the given position
+        private int firstAtOrAfterPosition(int[] positions, int from, int count, long position) {
+            if (position <= first) {
+                return from;
+            }
+            if (position >= next) {
+                return count;
+            }
+            int target = (int) (position - first);
+            int low = from;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (offset(positions[mid]) < target) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private void addToAccount(int accountNumber, int position) {
+            int slot = indexOf(accountNumber);
+            if (slot < 0) {
+                if (accountCount + 1 > keys.length * LOAD_FACTOR) {
+                    resize(keys.length * 2);
+                }
+                slot = freeSlot(keys, lists, accountNumber);
+                keys[slot] = accountNumber;
+                lists[slot] = new int[FIRST_LIST_SIZE];
+                starts[slot] = 0;
+                counts[slot] = 0;
+                accountCount++;
+            }
+            int[] list = lists[slot];
+            if (counts[slot] == list.length) {
+                int start = starts[slot];
+                int kept = counts[slot] - start;
+                // Slide the kept entries down if at least half the list was dropped, otherwise grow it
+                int[] moved = start >= list.length / 2 ? list : new int[list.length * 2];
+                System.arraycopy(list, start, moved, 0, kept);
+                lists[slot] = list = moved;
+                starts[slot] = 0;
+                counts[slot] = kept;
+            }
+            list[counts[slot]++] = position;
+        }
+
+        private int indexOf(int accountNumber) {
+            int mask = keys.length - 1;
+            for (int i = hash(accountNumber) & mask; lists[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == accountNumber) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // Remove the account at slot, moving later entries of its probe run back like AccountStore
+        private void deleteSlot(int slot) {
+            int mask = keys.length - 1;
+            int free = slot;
+            int at = slot;
+            while (true) {
+                at = (at + 1) & mask;
+                if (lists[at] == null) {
+                    break;
+                }
+                int home = hash(keys[at]) & mask;
+                // Move the entry back only if its home slot is not between the free slot and its current slot
+                boolean inRange = free <= at ? (free < home && home <= at) : (free < home || home <= at);
+                if (!inRange) {
+                    keys[free] = keys[at];
+                    lists[free] = lists[at];
+                    starts[free] = starts[at];
+                    counts[free] = counts[at];
+                    free = at;
+                }
+            }
+            keys[free] = 0;
+            lists[free] = null;
+        }
+
+        private void resize(int capacity) {
+            int[] newKeys = new int[capacity];
+            int[][] newLists = new int[capacity][];
+            int[] newStarts = new int[capacity];
+            int[] newCounts = new int[capacity];
+            for (int i = 0; i < keys.length; i++) {
+                if (lists[i] != null) {
+                    int slot = freeSlot(newKeys, newLists, keys[i]);
+                    newKeys[slot] = keys[i];
+                    newLists[slot] = lists[i];
+                    newStarts[slot] = starts[i];
+                    newCounts[slot] = counts[i];
+                }
+            }
+            keys = newKeys;
+            lists = newLists;
+            starts = newStarts;
+            counts = newCounts;
+        }
+    }
+
+    private static int freeSlot(int[] keys, int[][] lists, int accountNumber) {
+        int mask = keys.length - 1;
+        int i = hash(accountNumber) & mask;
+        while (lists[i] != null) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private static int hash(int accountNumber) {
+        int h = accountNumber * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,571 @@
+package bankingsystem;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+import java.util.zip.CRC32;
+
+// Append-only journal of account mutations, fsynced before each operation returns
+// File layout: header (magic, generation), then records of [int length][byte type][payload][int crc32]
+public class TransactionJournal implements AutoCloseable {
+    private static final int MAGIC = 0x424A524E; // "BJRN"
+    static final int HEADER_SIZE = 12;
+
+    private static final byte CREATE = 1;
+    private static final byte CLOSE = 2;
+    private static final byte DEPOSIT = 3; // Amounts as long cents
+    private static final byte WITHDRAW = 4;
+    private static final byte TRANSFER = 5; // One or more transfers applied as a unit
+    private static final byte ADJUSTMENTS = 6; // Signed changes to several accounts, e.g. interest and fees
+    private static final byte END_OF_DAY = 7; // The day of an end-of-day run, then its adjustments
+
+    private final long groupCommitMillis;
+    private final Path file;
+    private FileChannel channel; // Replaced by rotate(), which is only done with nothing pending
+    private final Thread flusher;
+    private long generation;
+
+    // Guarded by "this": records waiting for the next fsync
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private long appendedCount; // Records handed to append()
+    private long durableCount; // Records known to be on disk (and replicated, when synchronous)
+    private long writtenOffset; // End of the records fsynced to the current file
+    private long resetGeneration; // Generation started by the last reset(), which threw away the file before it
+    private IOException failure; // Set if a write or fsync fails
+    private boolean closed;
+    private volatile ReplicationServer replication; // null when not replicating
+
+    // groupCommitMillis is how long the flusher gathers records before each fsync
+    public TransactionJournal(Path file, long generation, long groupCommitMillis) throws IOException {
+        this.groupCommitMillis = groupCommitMillis;
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        this.generation = generation;
+        if (readGeneration(channel) != generation) {
+            // Missing, damaged or already folded into the snapshot: start over
+            channel.truncate(0);
+            writeHeader(generation);
+        }
+        channel.position(channel.size());
+        this.writtenOffset = channel.size();
+        this.flusher = new Thread(this::flushLoop, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    // Ship every batch to the standbys of the given server from now on
+    void setReplication(ReplicationServer server) {
+        replication = server;
+    }
+
+    // Wait for records past offset, returns where the fsynced ones end or -1 if the generation is over
+    synchronized long awaitWritten(long fileGeneration, long offset, long timeoutMillis) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long remaining = timeoutMillis;
+        while (generation == fileGeneration && writtenOffset <= offset && !closed && remaining > 0) {
+            wait(remaining);
+            remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        }
+        if (closed) {
+            throw new IOException("Journal is closed");
+        }
+        return generation == fileGeneration ? writtenOffset : -1;
+    }
+
+    // Files of generations before this one may have lost records to reset() and can't be shipped
+    synchronized long getResetGeneration() {
+        return resetGeneration;
+    }
+
+    // Where rotate() puts the records of the given generation
+    public static Path segmentFile(Path journalFile, long generation) {
+        return journalFile.resolveSibling(journalFile.getFileName() + "." + generation);
+    }
+
+    public void logCreate(Account account) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(account.getAccountNumber());
+            out.writeUTF(account.getFullName());
+            out.writeUTF(account.getAddress());
+            out.writeUTF(account.getBirthday());
+            out.writeUTF(account.getGender());
+            out.writeUTF(account.getAccountType());
+            out.writeUTF(account.getBalance().toPlainString());
+            byte[] credentials = account.credentials();
+            writeBytes(out, credentials, 0, PinHasher.SALT_LENGTH);
+            writeBytes(out, credentials, PinHasher.SALT_LENGTH, PinHasher.HASH_LENGTH);
+            append(CREATE, bytes.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing journal", e);
+        }
+    }
+
+    public void logClose(int accountNumber) {
+        append(CLOSE, ByteBuffer.allocate(4).putInt(accountNumber).array());
+    }
+
+    // Amounts are in cents
+    public void logDeposit(int accountNumber, long amount) {
+        append(DEPOSIT, ByteBuffer.allocate(12).putInt(accountNumber).putLong(amount).array());
+    }
+
+    public void logWithdraw(int accountNumber, long amount) {
+        append(WITHDRAW, ByteBuffer.allocate(12).putInt(accountNumber).putLong(amount).array());
+    }
+
+    // All the transfers go in one record, so replay applies all of them or none
+    public void logTransfers(List<Transfer> transfers) {
+        ByteBuffer payload = ByteBuffer.allocate(4 + transfers.size() * 16).putInt(transfers.size());
+        for (Transfer transfer : transfers) {
+            payload.putInt(transfer.getFrom().getAccountNumber())
+                    .putInt(transfer.getTo().getAccountNumber())
+                    .putLong(transfer.getAmount());
+        }
+        append(TRANSFER, payload.array());
+    }
+
+    // Changes of balance in cents for the first count accounts, as one record
+    public void logAdjustments(int[] accountNumbers, long[] amounts, int count) {
+        ByteBuffer payload = ByteBuffer.allocate(4 + count * 12).putInt(count);
+        for (int i = 0; i < count; i++) {
+            payload.putInt(accountNumbers[i]).putLong(amounts[i]);
+        }
+        append(ADJUSTMENTS, payload.array());
+    }
+
+    // A whole end-of-day run with its day, so replay finds both or neither
+    public void logEndOfDay(LocalDate day, int[] accountNumbers, long[] amounts, int count) {
+        ByteBuffer payload = ByteBuffer.allocate(8 + 4 + count * 12).putLong(day.toEpochDay()).putInt(count);
+        for (int i = 0; i < count; i++) {
+            payload.putInt(accountNumbers[i]).putLong(amounts[i]);
+        }
+        append(END_OF_DAY, payload.array());
+    }
+
+    // Adds a record and blocks until it has been fsynced
+    private void append(byte type, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        long ticket;
+        synchronized (this) {
+            checkUsable();
+            int recordSize = 4 + 1 + payload.length + 4;
+            if (pending.remaining() < recordSize) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + recordSize));
+                pending.flip();
+                grown.put(pending);
+                pending = grown;
+            }
+            pending.putInt(1 + payload.length).put(type).put(payload).putInt((int) crc.getValue());
+            ticket = ++appendedCount;
+            notifyAll(); // Wake the flusher
+            while (durableCount < ticket) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Error writing journal", failure);
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the journal", e);
+                }
+            }
+        }
+    }
+
+    private void checkUsable() {
+        if (failure != null) {
+            throw new UncheckedIOException("Error writing journal", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+    }
+
+    // Group commit: write everything that piled up since the last fsync, then fsync once
+    private void flushLoop() {
+        ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+        while (true) {
+            ByteBuffer batch;
+            long batchEnd;
+            FileChannel target;
+            long targetGeneration;
+            long end;
+            synchronized (this) {
+                while (appendedCount == durableCount && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed && appendedCount == durableCount) {
+                    return;
+                }
+            }
+            if (groupCommitMillis > 0) {
+                try {
+                    Thread.sleep(groupCommitMillis); // Let more records join this batch
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            synchronized (this) {
+                batch = pending;
+                batchEnd = appendedCount;
+                target = channel;
+                targetGeneration = generation;
+                spare.clear();
+                pending = spare;
+            }
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    target.write(batch);
+                }
+                target.force(false);
+                end = target.position();
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+            spare = batch;
+            synchronized (this) {
+                writtenOffset = end; // Rotation waits for this batch, so target is still the current file
+                notifyAll(); // Wake the replication senders
+            }
+            ReplicationServer server = replication;
+            if (server != null) {
+                server.awaitAcknowledged(targetGeneration, end); // Returns at once unless synchronous
+            }
+            synchronized (this) {
+                durableCount = batchEnd;
+                notifyAll();
+            }
+        }
+    }
+
+    // Called after accounts.dat has been saved, start an empty journal for the next generation
+    public synchronized void reset(long newGeneration) throws IOException {
+        awaitDurable();
+        channel.truncate(0);
+        writeHeader(newGeneration);
+        channel.position(HEADER_SIZE);
+        generation = newGeneration;
+        writtenOffset = HEADER_SIZE;
+        resetGeneration = newGeneration;
+        notifyAll();
+    }
+
+    // Move everything logged so far to a segment and continue in a new generation, returns the segment's
+    public synchronized long rotate() throws IOException {
+        awaitDurable();
+        if (failure != null) {
+            throw new IOException("Journal failed earlier", failure);
+        }
+        Path segment = segmentFile(file, generation);
+        Files.move(file, segment, StandardCopyOption.ATOMIC_MOVE);
+        FileChannel previous = channel;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        previous.close();
+        writeHeader(generation + 1);
+        channel.position(HEADER_SIZE);
+        writtenOffset = HEADER_SIZE;
+        notifyAll();
+        return generation++;
+    }
+
+    // Wait, holding the lock, until every appended record is on disk and the flusher is idle
+    private void awaitDurable() throws IOException {
+        while (durableCount < appendedCount && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the journal", e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    private void writeHeader(long headerGeneration) throws IOException {
+        writeHeader(channel, headerGeneration);
+    }
+
+    // Start a journal file of the given generation, used by standbys that copy the primary's files
+    static void writeHeader(FileChannel target, long headerGeneration) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putLong(headerGeneration);
+        header.flip();
+        target.write(header, 0);
+        target.force(false);
+    }
+
+    // Generation stored in the header, or -1 if the file has no valid header
+    static long readGeneration(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return -1;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        return header.getInt() == MAGIC ? header.getLong() : -1;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value, int offset, int length) throws IOException {
+        out.writeByte(length);
+        out.write(value, offset, length);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] value = new byte[in.readUnsignedByte()];
+        in.readFully(value);
+        return value;
+    }
+
+    // Replay the records of the given generation, except for accounts in alreadySaved; returns how many
+    public static int replay(Path file, long generation, AccountStore accounts, IntPredicate alreadySaved) throws IOException {
+        ByteBuffer buffer = readJournal(file, generation);
+        if (buffer == null) {
+            return 0;
+        }
+        int[] replayed = new int[1];
+        int validEnd = applyRecords(buffer, accounts, alreadySaved, replayed);
+
+        if (validEnd < buffer.capacity()) {
+            try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                out.truncate(validEnd);
+            }
+        }
+        return replayed[0];
+    }
+
+    // Apply records shipped from a primary, returns where the last whole record ends
+    static int apply(ByteBuffer records, AccountStore accounts, IntPredicate alreadySaved) throws IOException {
+        int end = applyRecords(records, accounts, alreadySaved, new int[1]);
+        int left = records.limit() - end;
+        if (left >= 4) {
+            int length = records.getInt(end);
+            if (length < 1 || left >= 4 + length + 4) {
+                throw new IOException("Damaged journal record at " + end); // Complete but doesn't check out
+            }
+        }
+        return end;
+    }
+
+    private static int applyRecords(ByteBuffer buffer, AccountStore accounts, IntPredicate alreadySaved, int[] replayed) throws IOException {
+        return readRecords(buffer, (type, payload) -> {
+            if (type == TRANSFER) {
+                applyTransfers(payload, accounts, alreadySaved);
+                replayed[0]++;
+            } else if (type == ADJUSTMENTS) {
+                applyAdjustments(ByteBuffer.wrap(payload), accounts, alreadySaved);
+                replayed[0]++;
+            } else if (type == END_OF_DAY) {
+                ByteBuffer in = ByteBuffer.wrap(payload);
+                LocalDate day = LocalDate.ofEpochDay(in.getLong());
+                applyAdjustments(in, accounts, alreadySaved);
+                accounts.endOfDayDone(day);
+                replayed[0]++;
+            } else if (!alreadySaved.test(ByteBuffer.wrap(payload).getInt())) { // Other records start with the account number
+                apply(type, payload, accounts);
+                replayed[0]++;
+            }
+        });
+    }
+
+    // Every account number that a record of the given generation touches, in no particular order
+    public static int[] accountNumbers(Path file, long generation) throws IOException {
+        ByteBuffer buffer = readJournal(file, generation);
+        if (buffer == null) {
+            return new int[0];
+        }
+        int[][] numbers = {new int[64]};
+        int[] count = new int[1];
+        readRecords(buffer, (type, payload) -> {
+            ByteBuffer in = ByteBuffer.wrap(payload);
+            if (type == END_OF_DAY) {
+                in.getLong(); // The day, then the same as adjustments
+            }
+            boolean adjustments = type == ADJUSTMENTS || type == END_OF_DAY;
+            int legs = type == TRANSFER ? in.getInt() * 2 : adjustments ? in.getInt() : 1;
+            for (int i = 0; i < legs; i++) {
+                if (count[0] == numbers[0].length) {
+                    numbers[0] = Arrays.copyOf(numbers[0], count[0] * 2);
+                }
+                numbers[0][count[0]++] = in.getInt();
+                if (type == TRANSFER && i % 2 == 1 || adjustments) {
+                    in.getLong(); // Amount after each from, to pair, or after each account
+                }
+            }
+        });
+        return Arrays.copyOf(numbers[0], count[0]);
+    }
+
+    private interface RecordHandler {
+        void handle(byte type, byte[] payload) throws IOException;
+    }
+
+    // The whole file positioned after the header, or null if it is missing or of another generation
+    private static ByteBuffer readJournal(Path file, long generation) throws IOException {
+        if (!Files.exists(file) || Files.size(file) < HEADER_SIZE) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a journal file: " + file);
+        }
+        if (buffer.getLong() != generation) {
+            return null; // Older journal, already part of the snapshot
+        }
+        return buffer;
+    }
+
+    // Hand every intact record to the handler, returns the end of the last one
+    private static int readRecords(ByteBuffer buffer, RecordHandler handler) throws IOException {
+        int validEnd = buffer.position();
+        while (buffer.remaining() >= 4) {
+            int length = buffer.getInt();
+            if (length < 1 || buffer.remaining() < length + 4) {
+                break;
+            }
+            byte type = buffer.get();
+            byte[] payload = new byte[length - 1];
+            buffer.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(type);
+            crc.update(payload);
+            if (buffer.getInt() != (int) crc.getValue()) {
+                break;
+            }
+            handler.handle(type, payload);
+            validEnd = buffer.position();
+        }
+        return validEnd;
+    }
+
+    // A transfer touches two accounts, each one is skipped on its own if it was already saved
+    private static void applyTransfers(byte[] payload, AccountStore accounts, IntPredicate alreadySaved) {
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            int from = in.getInt();
+            int to = in.getInt();
+            long amount = in.getLong();
+            Account fromAccount = accounts.get(from);
+            Account toAccount = accounts.get(to);
+            boolean applyFrom = fromAccount != null && !alreadySaved.test(from);
+            if (toAccount != null && !alreadySaved.test(to) && !toAccount.tryCredit(amount)) {
+                skipped("transfer of " + Money.format(amount) + " from account " + from + " to " + to);
+                continue; // Neither side, the money stays where it was
+            }
+            if (applyFrom) {
+                fromAccount.applyWithdraw(amount);
+            }
+        }
+    }
+
+    // Like transfers, each account is skipped on its own if it was already saved
+    private static void applyAdjustments(ByteBuffer in, AccountStore accounts, IntPredicate alreadySaved) {
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            int accountNumber = in.getInt();
+            long amount = in.getLong();
+            Account account = accounts.get(accountNumber);
+            if (account != null && !alreadySaved.test(accountNumber)) {
+                if (amount < 0) {
+                    account.applyDeposit(amount);
+                } else if (!account.tryCredit(amount)) {
+                    skipped("adjustment of " + Money.format(amount) + " to account " + accountNumber); // As EndOfDayJob did
+                }
+            }
+        }
+    }
+
+    // A record that would overflow a balance is left out rather than stopping the bank from starting
+    private static void skipped(String record) {
+        System.err.println("Skipped journal record, the balance can't hold it: " + record);
+    }
+
+    private static void deposit(Account account, long amount) {
+        if (!account.tryCredit(amount)) {
+            skipped("deposit of " + Money.format(amount) + " to account " + account.getAccountNumber());
+        }
+    }
+
+    private static void apply(byte type, byte[] payload, AccountStore accounts) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        switch (type) {
+            case CREATE: {
+                int accountNumber = in.readInt();
+                String fullName = in.readUTF();
+                String address = in.readUTF();
+                String birthday = in.readUTF();
+                String gender = in.readUTF();
+                String accountType = in.readUTF();
+                long balance = Money.fromBigDecimal(new BigDecimal(in.readUTF()));
+                byte[] credentials = Account.credentials(readBytes(in), readBytes(in)); // Salt, then hash
+                Account account = new Account(accountNumber, fullName, address, birthday, gender, accountType, balance, credentials);
+                account.markModified(); // Not in accounts.dat yet
+                accounts.put(account);
+                break;
+            }
+            case CLOSE:
+                accounts.remove(in.readInt());
+                break;
+            case DEPOSIT: {
+                Account account = accounts.get(in.readInt());
+                if (account != null) {
+                    deposit(account, in.readLong());
+                }
+                break;
+            }
+            case WITHDRAW: {
+                Account account = accounts.get(in.readInt());
+                if (account != null) {
+                    account.applyWithdraw(in.readLong());
+                }
+                break;
+            }
+            default:
+                throw new IOException("Unknown journal record type " + type);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package bankingsystem;
+
+// One movement of money between two accounts in cents, for Account.transferAll
+public final class Transfer {
+    private final Account from;
+    private final Account to;
+    private final long amount;
+
+    public Transfer(Account from, Account to, long amount) {
+        if (from == to) {
+            throw new IllegalArgumentException("Cannot transfer to the same account");
+        }
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        this.from = from;
+        this.to = to;
+        this.amount = amount;
+    }
+
+    public Account getFrom() {
+        return from;
+    }
+
+    public Account getTo() {
+        return to;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+}
@@ -0,0 +1,187 @@
+package bankingsystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+// Many threads moving money between a few accounts at once: none may appear or vanish or go below zero
+class AccountConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 100_000; // Per thread
+    private static final int ACCOUNTS = 4; // Few, so every operation contends
+    private static final long STARTING_BALANCE = 1_000_00;
+
+    @BeforeEach
+    void setUp() {
+        Account.setJournal(null);
+        Account.setHistory(null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Account.setHistory(null);
+    }
+
+    @Test
+    void moneyIsConserved() throws InterruptedException {
+        run(accounts());
+    }
+
+    @Test
+    void moneyIsConservedWithHistory() throws InterruptedException {
+        TransactionHistory history = new TransactionHistory(THREADS * OPERATIONS * 2L);
+        Account.setHistory(history);
+        Account[] accounts = accounts();
+        run(accounts);
+
+        // Each account's entries were recorded in the order their balances were produced
+        for (Account account : accounts) {
+            TransactionHistory.Entry last = null;
+            TransactionHistory.Page page = history.statement(account.getAccountNumber(), Long.MIN_VALUE, Long.MAX_VALUE, 0, 1000);
+            while (true) {
+                List<TransactionHistory.Entry> entries = page.getEntries();
+                if (!entries.isEmpty()) {
+                    last = entries.get(entries.size() - 1);
+                }
+                if (!page.hasMore()) {
+                    break;
+                }
+                page = history.statement(account.getAccountNumber(), Long.MIN_VALUE, Long.MAX_VALUE, page.getLastSequence(), 1000);
+            }
+            assertEquals(account.getBalanceCents(), last.getBalanceAfter(), "last statement line of account " + account.getAccountNumber());
+        }
+    }
+
+    @Test
+    void closingPaysOutEverythingThatWentIn() throws InterruptedException {
+        Account account = accounts()[0];
+        LongAdder deposited = new LongAdder();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch started = new CountDownLatch(THREADS);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            threads.add(new Thread(() -> {
+                started.countDown();
+                try {
+                    for (int i = 0; i < 2 * OPERATIONS * THREADS; i++) { // Long past the close
+                        account.deposit(1);
+                        deposited.increment();
+                    }
+                } catch (IllegalStateException e) {
+                    // Closed, nothing more goes in
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        started.await();
+        Thread.sleep(50);
+        long paidOut = account.close();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+        assertEquals(STARTING_BALANCE + deposited.sum(), paidOut);
+        assertEquals(0, account.getBalanceCents());
+        assertFalse(account.tryWithdraw(1));
+        assertEquals(0, account.close());
+    }
+
+    private static Account[] accounts() {
+        Account[] accounts = new Account[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = new Account(1000 + i, "Juan Dela Cruz", "Manila", "1990-01-01", "Male", "Savings",
+                    STARTING_BALANCE, new byte[PinHasher.SALT_LENGTH + PinHasher.HASH_LENGTH]);
+        }
+        return accounts;
+    }
+
+    private static void run(Account[] accounts) throws InterruptedException {
+        LongAdder deposited = new LongAdder();
+        LongAdder withdrawn = new LongAdder();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicBoolean sawNegative = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            SplittableRandom random = new SplittableRandom(t);
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < OPERATIONS; i++) {
+                        Account account = accounts[random.nextInt(ACCOUNTS)];
+                        long amount = 1 + random.nextInt(500_00);
+                        switch (random.nextInt(4)) {
+                            case 0:
+                                account.deposit(amount);
+                                deposited.add(amount);
+                                break;
+                            case 1:
+                                if (account.tryWithdraw(amount)) {
+                                    withdrawn.add(amount);
+                                }
+                                break;
+                            case 2:
+                                Account.transfer(account, other(accounts, account, random), amount);
+                                break;
+                            default:
+                                Account to = other(accounts, account, random);
+                                Account.transferAll(List.of(new Transfer(account, to, amount),
+                                        new Transfer(to, other(accounts, to, random), amount / 2 + 1)));
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        Thread watcher = new Thread(() -> {
+            while (running.get()) {
+                for (Account account : accounts) {
+                    if (account.getBalanceCents() < 0) {
+                        sawNegative.set(true);
+                    }
+                }
+                Thread.yield();
+            }
+        });
+
+        watcher.start();
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        running.set(false);
+        watcher.join();
+
+        assertNull(failure.get());
+        assertFalse(sawNegative.get(), "a balance went below zero");
+        long total = 0;
+        for (Account account : accounts) {
+            assertFalse(account.getBalanceCents() < 0, "balance of account " + account.getAccountNumber());
+            total += account.getBalanceCents();
+        }
+        assertEquals(ACCOUNTS * STARTING_BALANCE + deposited.sum() - withdrawn.sum(), total);
+    }
+
+    private static Account other(Account[] accounts, Account account, SplittableRandom random) {
+        Account other = accounts[random.nextInt(ACCOUNTS - 1)];
+        return other == account ? accounts[ACCOUNTS - 1] : other;
+    }
+}
@@ -0,0 +1,91 @@
+package bankingsystem;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Account numbers handed out by many threads, and by two allocators sharing one sequence file
+// the way two processes would, must never repeat, including after a restart.
+class AccountNumberAllocatorTest {
+    private static final int THREADS = 8;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void threadsNeverGetTheSameNumber() throws InterruptedException {
+        AccountNumberAllocator allocator = new AccountNumberAllocator(AccountNumberAllocator.FIRST_NUMBER);
+        assertUnique(allocate(new AccountNumberAllocator[] {allocator}, 500_000)); // 4M numbers
+    }
+
+    @Test
+    void allocatorsSharingAFileNeverGetTheSameNumber() throws IOException, InterruptedException {
+        Path file = directory.resolve("accounts.seq");
+        try (AccountNumberAllocator first = new AccountNumberAllocator(file, AccountNumberAllocator.FIRST_NUMBER, 1000);
+             AccountNumberAllocator second = new AccountNumberAllocator(file, AccountNumberAllocator.FIRST_NUMBER, 1000)) {
+            assertUnique(allocate(new AccountNumberAllocator[] {first, second}, 250_000)); // 2M numbers, 2000 blocks
+        }
+    }
+
+    @Test
+    void numbersAreNotReusedAfterARestart() throws IOException {
+        Path file = directory.resolve("accounts.seq");
+        int highest = 0;
+        try (AccountNumberAllocator allocator = new AccountNumberAllocator(file, AccountNumberAllocator.FIRST_NUMBER, 100)) {
+            for (int i = 0; i < 250; i++) {
+                highest = Math.max(highest, allocator.next());
+            }
+        }
+        try (AccountNumberAllocator allocator = new AccountNumberAllocator(file, AccountNumberAllocator.FIRST_NUMBER, 100)) {
+            assertTrue(allocator.next() > highest);
+        }
+    }
+
+    // Each thread takes count numbers from one of the allocators, in turn
+    private static int[][] allocate(AccountNumberAllocator[] allocators, int count) throws InterruptedException {
+        int[][] numbers = new int[THREADS][count];
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            AccountNumberAllocator allocator = allocators[t % allocators.length];
+            int[] taken = numbers[t];
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < count; i++) {
+                        taken[i] = allocator.next();
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        return numbers;
+    }
+
+    private static void assertUnique(int[][] numbers) {
+        BitSet seen = new BitSet();
+        for (int[] taken : numbers) {
+            for (int number : taken) {
+                assertTrue(number >= AccountNumberAllocator.FIRST_NUMBER, "number " + number);
+                assertFalse(seen.get(number), "number " + number + " handed out twice");
+                seen.set(number);
+            }
+        }
+    }
+}